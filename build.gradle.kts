@@ -1,6 +1,7 @@
 plugins {
     id("org.springframework.boot") version "3.2.0"
     id("io.spring.dependency-management") version "1.1.4"
+    id("me.champeau.jmh") version "0.7.2"
     java
 }
 
@@ -22,20 +23,26 @@ ext {
 }
 
 dependencies {
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-data-redis")
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-web")
+    implementation("org.springframework.boot:spring-boot-starter-webflux")
     implementation("org.springframework.boot:spring-boot-docker-compose")
     implementation("org.flywaydb:flyway-core")
+    implementation("com.github.ben-manes.caffeine:caffeine")
     compileOnly("org.projectlombok:lombok")
     runtimeOnly("org.postgresql:postgresql")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     annotationProcessor("org.projectlombok:lombok")
     testImplementation("org.springframework.boot:spring-boot-testcontainers")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testImplementation("org.testcontainers:junit-jupiter")
     testImplementation("org.testcontainers:postgresql")
-    testImplementation("org.springframework.boot:spring-boot-starter-webflux")
+    jmh("com.github.codemonstur:embedded-redis:1.4.3")
+    jmh("io.zonky.test:embedded-postgres:2.0.6")
+    jmh("org.hdrhistogram:HdrHistogram:2.1.12")
 }
 
 dependencyManagement {
@@ -50,6 +57,25 @@ java {
     }
 }
 
+jmh {
+    resultFormat.set("JSON")
+}
+
+tasks.jmhJar {
+    // Embedded Postgres fails when it finds its binaries twice, and they are already on the benchmark classpath
+    exclude("postgres-*.txz")
+    // Spring only finds its virtual thread support in the Java 21 classes of its multi-release jars
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
+tasks.register<JavaExec>("loadTest") {
+    description = "Runs the load test against the HTTP API, configured with --args='--rate=2000 --read-ratio=0.9'."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("com.example.person.PersonLoadTest")
+}
+
 tasks.test {
     useJUnitPlatform()
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.example.person;
+
+import com.example.Application;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Boots the application against an embedded Redis server and an embedded Postgres so benchmarks run offline
+final class PersonBenchmarkEnvironment implements AutoCloseable {
+
+    private final RedisServer redisServer;
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext applicationContext;
+
+    private PersonBenchmarkEnvironment(RedisServer redisServer,
+                                       EmbeddedPostgres postgres,
+                                       ConfigurableApplicationContext applicationContext) {
+        this.redisServer = redisServer;
+        this.postgres = postgres;
+        this.applicationContext = applicationContext;
+    }
+
+    static PersonBenchmarkEnvironment start(Map<String, Object> properties) {
+        return start(properties, WebApplicationType.NONE);
+    }
+
+    static PersonBenchmarkEnvironment start(Map<String, Object> properties,
+                                            WebApplicationType webApplicationType,
+                                            String... profiles) {
+        try {
+            final var redisPort = findFreePort();
+            final var redisServer = new RedisServer(redisPort);
+            redisServer.start();
+
+            final var postgres = EmbeddedPostgres.start();
+
+            final var benchmarkProperties = new HashMap<String, Object>();
+            benchmarkProperties.put("spring.main.banner-mode", "off");
+            benchmarkProperties.put("spring.docker.compose.enabled", false);
+            benchmarkProperties.put("spring.datasource.url", postgres.getJdbcUrl("postgres", "postgres"));
+            benchmarkProperties.put("spring.datasource.username", "postgres");
+            benchmarkProperties.put("spring.data.redis.host", "localhost");
+            benchmarkProperties.put("spring.data.redis.port", redisPort);
+            benchmarkProperties.put("server.port", 0);
+            benchmarkProperties.put("logging.level.com.example", "warn");
+            // Benchmarks trigger the write back themselves
+            benchmarkProperties.put("person-service.cache.write-back-rate", Duration.ofDays(365).toMillis());
+            benchmarkProperties.put("person-service.cache.write-back-max-staleness", "365d");
+            benchmarkProperties.put("person-service.cache.write-back-high-water-mark", Long.MAX_VALUE);
+            benchmarkProperties.putAll(properties);
+
+            final var applicationContext = new SpringApplicationBuilder(Application.class)
+                    .web(webApplicationType)
+                    .profiles(profiles)
+                    .run(toArguments(benchmarkProperties));
+
+            return new PersonBenchmarkEnvironment(redisServer, postgres, applicationContext);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    <T> T getBean(Class<T> beanType) {
+        return applicationContext.getBean(beanType);
+    }
+
+    WebServer getWebServer() {
+        return ((WebServerApplicationContext) applicationContext).getWebServer();
+    }
+
+    int getLocalPort() {
+        return applicationContext.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    @Override
+    public void close() throws IOException {
+        applicationContext.close();
+        postgres.close();
+        redisServer.stop();
+    }
+
+    // Passed as command line arguments, which unlike default properties take precedence over application.properties
+    private static String[] toArguments(Map<String, Object> properties) {
+        return properties.entrySet()
+                .stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+    }
+
+    private static int findFreePort() throws IOException {
+        try (final var serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.person;
+
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Many concurrent clients against the HTTP API, served on platform threads or on virtual threads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(128)
+@Fork(1)
+public class PersonLoadBenchmark {
+
+    private static final String PERSON_REQUEST = "{\"name\":\"John Smith\",\"age\":45}";
+
+    @Param({"platform-threads", "virtual-threads"})
+    private String threading;
+
+    private PersonBenchmarkEnvironment environment;
+    private HttpClient httpClient;
+    private URI peopleUri;
+    private URI personCachedUri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = PersonBenchmarkEnvironment.start(Map.of(), WebApplicationType.SERVLET, threading);
+        httpClient = HttpClient.newHttpClient();
+        peopleUri = URI.create("http://localhost:" + environment.getLocalPort() + "/people");
+
+        final UUID personCachedId = environment.getBean(PersonService.class).create("John Smith", 45).getId();
+        personCachedUri = peopleUri.resolve("/people/" + personCachedId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    // Platform threads Tomcat started to serve requests, none on virtual threads where every request gets its own
+    private int requestThreads() {
+        final var executor = ((TomcatWebServer) environment.getWebServer()).getTomcat()
+                .getConnector()
+                .getProtocolHandler()
+                .getExecutor();
+
+        return executor instanceof ThreadPoolExecutor threadPoolExecutor ? threadPoolExecutor.getLargestPoolSize() : 0;
+    }
+
+    @Benchmark
+    public int findOne(RequestThreads requestThreads) throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(personCachedUri).GET().build();
+
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int create(RequestThreads requestThreads) throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(peopleUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(PERSON_REQUEST))
+                .build();
+
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    // Reported as the secondary result "findOne:requestThreads", next to the throughput, so it reaches the results file.
+    // Counters are summed across client threads, so only the first one reports the server's
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RequestThreads {
+
+        public long requestThreads;
+
+        @TearDown(Level.Iteration)
+        public void record(PersonLoadBenchmark benchmark, ThreadParams threadParams) {
+            requestThreads = threadParams.getThreadIndex() == 0 ? benchmark.requestThreads() : 0;
+        }
+    }
+}
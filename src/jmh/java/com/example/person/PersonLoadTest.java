@@ -0,0 +1,419 @@
+package com.example.person;
+
+import com.example.person.api.PersonBatchRequest;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/*
+ * Drives the HTTP API at a fixed arrival rate, mixing creates with reads skewed towards a few hot people, and writes
+ * latency percentiles, throughput and the write back backlog over time to a JSON report.
+ *
+ * Requests are sent when they are due whether or not earlier ones have completed, and their latency is measured from
+ * that moment, so a stalled server shows up as the latency its clients would see instead of as fewer requests sent.
+ */
+public final class PersonLoadTest {
+
+    private static final String PERSON_REQUEST = "{\"name\":\"John Smith\",\"age\":45}";
+    private static final int SEED_BATCH_SIZE = 1_000;
+    private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(1);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final Settings settings;
+    private final ObjectMapper objectMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PersonCacheKeys personCacheKeys;
+    private final PersonWriteBackPartitions personWriteBackPartitions;
+    private final HttpClient httpClient;
+    private final URI peopleUri;
+    private final Map<Operation, OperationStatistics> statistics = new LinkedHashMap<>();
+    private final AtomicLong requestsInFlight = new AtomicLong();
+
+    private PersonLoadTest(Settings settings, PersonBenchmarkEnvironment environment) {
+        this.settings = settings;
+        this.objectMapper = environment.getBean(ObjectMapper.class).copy().enable(SerializationFeature.INDENT_OUTPUT);
+        this.stringRedisTemplate = environment.getBean(StringRedisTemplate.class);
+        this.personCacheKeys = environment.getBean(PersonCacheKeys.class);
+        this.personWriteBackPartitions = environment.getBean(PersonWriteBackPartitions.class);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.peopleUri = URI.create("http://localhost:" + environment.getLocalPort() + "/people");
+
+        for (final var operation : Operation.values()) {
+            statistics.put(operation, new OperationStatistics());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final var settings = Settings.parse(args);
+
+        try (final var environment = PersonBenchmarkEnvironment.start(
+                settings.applicationProperties(), webApplicationType(settings), settings.profiles())) {
+            new PersonLoadTest(settings, environment).run();
+        }
+    }
+
+    // Served by WebFlux when the reactive profile is active, so it is the reactive service being measured
+    private static WebApplicationType webApplicationType(Settings settings) {
+        return Arrays.asList(settings.profiles()).contains("reactive")
+                ? WebApplicationType.REACTIVE
+                : WebApplicationType.SERVLET;
+    }
+
+    private void run() throws IOException, InterruptedException {
+        System.out.printf("Seeding %d people%n", settings.people());
+        final var personIds = seed();
+
+        final var timeline = new ArrayList<Map<String, Object>>();
+        final var sampler = Executors.newSingleThreadScheduledExecutor();
+        final var startedAtInstant = Instant.now();
+        final var startedAt = System.nanoTime();
+        final var measuringFrom = startedAt + settings.warmUp().toNanos();
+        sampler.scheduleAtFixedRate(() -> timeline.add(sample(startedAt, measuringFrom)), 1, 1, TimeUnit.SECONDS);
+
+        System.out.printf("Sending %d requests per second for %s after warming up for %s%n",
+                settings.rate(), settings.duration(), settings.warmUp());
+        final var requestsSent = send(personIds, startedAt, measuringFrom + settings.duration().toNanos());
+
+        awaitRequestsInFlight();
+        sampler.shutdown();
+        sampler.awaitTermination(5, TimeUnit.SECONDS);
+        timeline.add(sample(startedAt, measuringFrom));
+
+        final var drainDuration = awaitWriteBackDrained();
+        final var report = report(startedAtInstant, requestsSent, timeline, drainDuration);
+
+        Files.createDirectories(settings.report().toAbsolutePath().getParent());
+        objectMapper.writeValue(settings.report().toFile(), report);
+        System.out.println(objectMapper.writeValueAsString(report.get("operations")));
+        System.out.printf("Report written to %s%n", settings.report().toAbsolutePath());
+    }
+
+    // Created through the API in batches so every profile is seeded the same way
+    private List<UUID> seed() throws IOException, InterruptedException {
+        final var personIds = new ArrayList<UUID>(settings.people());
+
+        while (personIds.size() < settings.people()) {
+            final var batchSize = Math.min(SEED_BATCH_SIZE, settings.people() - personIds.size());
+            final var batchRequest = PersonBatchRequest.builder()
+                    .people(IntStream.range(0, batchSize)
+                            .mapToObj(index -> PersonRequest.builder().name("Person " + index).age(20).build())
+                            .toList())
+                    .build();
+            final var request = HttpRequest.newBuilder(URI.create(peopleUri + "/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batchRequest)))
+                    .build();
+            final var response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Seeding people failed with status " + response.statusCode());
+            }
+
+            objectMapper.readValue(response.body(), new TypeReference<List<PersonResponse>>() {})
+                    .forEach(personResponse -> personIds.add(personResponse.getId()));
+        }
+
+        return personIds;
+    }
+
+    private long send(List<UUID> personIds, long startedAt, long finishedAt) {
+        final var interval = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        final var random = ThreadLocalRandom.current();
+        final var hotPeople = Math.min(settings.hotPeople(), personIds.size());
+
+        var requestsSent = 0L;
+        for (var dueAt = startedAt; dueAt < finishedAt; dueAt = startedAt + requestsSent * interval) {
+            final var delay = dueAt - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+
+            if (random.nextDouble() < settings.readRatio()) {
+                final var personId = hotPeople > 0 && random.nextDouble() < settings.hotRatio()
+                        ? personIds.get(random.nextInt(hotPeople))
+                        : personIds.get(random.nextInt(personIds.size()));
+                send(Operation.FIND_ONE, HttpRequest.newBuilder(URI.create(peopleUri + "/" + personId)).GET(), dueAt);
+            } else {
+                send(Operation.CREATE, HttpRequest.newBuilder(peopleUri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(PERSON_REQUEST)), dueAt);
+            }
+
+            requestsSent++;
+        }
+
+        return requestsSent;
+    }
+
+    private void send(Operation operation, HttpRequest.Builder requestBuilder, long dueAt) {
+        final var operationStatistics = statistics.get(operation);
+        final var sentAt = System.nanoTime();
+
+        requestsInFlight.incrementAndGet();
+        httpClient.sendAsync(requestBuilder.timeout(Duration.ofNanos(HIGHEST_TRACKABLE_LATENCY)).build(),
+                        HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, exception) -> {
+                    final var completedAt = System.nanoTime();
+                    operationStatistics.responseTimes.recordValue(Math.min(completedAt - dueAt, HIGHEST_TRACKABLE_LATENCY));
+                    operationStatistics.serviceTimes.recordValue(Math.min(completedAt - sentAt, HIGHEST_TRACKABLE_LATENCY));
+                    if (exception != null || response.statusCode() != operation.expectedStatus) {
+                        operationStatistics.errors.incrementAndGet();
+                    }
+                    requestsInFlight.decrementAndGet();
+                });
+    }
+
+    private void awaitRequestsInFlight() throws InterruptedException {
+        final var deadline = System.nanoTime() + HIGHEST_TRACKABLE_LATENCY;
+        while (requestsInFlight.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    // How long the people created during the test took to reach the database once clients stopped
+    private Duration awaitWriteBackDrained() throws InterruptedException {
+        final var stoppedAt = System.nanoTime();
+        final var deadline = stoppedAt + settings.drainTimeout().toNanos();
+
+        while (writeBackLag().queued() > 0) {
+            if (System.nanoTime() > deadline) {
+                return null;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        return Duration.ofNanos(System.nanoTime() - stoppedAt);
+    }
+
+    private Map<String, Object> sample(long startedAt, long measuringFrom) {
+        final var now = System.nanoTime();
+        final var sample = new LinkedHashMap<String, Object>();
+        sample.put("second", TimeUnit.NANOSECONDS.toSeconds(now - startedAt));
+        sample.put("warmUp", now < measuringFrom);
+
+        statistics.forEach((operation, operationStatistics) -> {
+            final var interval = operationStatistics.responseTimes.getIntervalHistogram();
+            final var serviceInterval = operationStatistics.serviceTimes.getIntervalHistogram();
+            if (now >= measuringFrom) {
+                operationStatistics.responseTimesMeasured.add(interval);
+                operationStatistics.serviceTimesMeasured.add(serviceInterval);
+            }
+
+            final var operationSample = new LinkedHashMap<String, Object>();
+            operationSample.put("completed", interval.getTotalCount());
+            operationSample.put("p50Millis", millis(interval.getValueAtPercentile(50)));
+            operationSample.put("p99Millis", millis(interval.getValueAtPercentile(99)));
+            operationSample.put("maxMillis", millis(interval.getMaxValue()));
+            sample.put(operation.reportName, operationSample);
+        });
+
+        sample.put("requestsInFlight", requestsInFlight.get());
+        final var writeBackLag = writeBackLag();
+        sample.put("writeBackQueued", writeBackLag.queued());
+        sample.put("writeBackOldestAgeSeconds", writeBackLag.oldestAgeSeconds());
+        return sample;
+    }
+
+    private Map<String, Object> report(Instant startedAt,
+                                       long requestsSent,
+                                       List<Map<String, Object>> timeline, Duration drainDuration) {
+        final var measuredSeconds = (double) settings.duration().toNanos() / TimeUnit.SECONDS.toNanos(1);
+
+        final var operations = new LinkedHashMap<String, Object>();
+        statistics.forEach((operation, operationStatistics) -> {
+            final var responseTimes = operationStatistics.responseTimesMeasured;
+            final var operationReport = new LinkedHashMap<String, Object>();
+            operationReport.put("completed", responseTimes.getTotalCount());
+            operationReport.put("errors", operationStatistics.errors.get());
+            operationReport.put("throughputPerSecond", responseTimes.getTotalCount() / measuredSeconds);
+            operationReport.put("responseTimeMillis", percentiles(responseTimes));
+            operationReport.put("serviceTimeMillis", percentiles(operationStatistics.serviceTimesMeasured));
+            operations.put(operation.reportName, operationReport);
+        });
+
+        final var report = new LinkedHashMap<String, Object>();
+        report.put("startedAt", startedAt.toString());
+        report.put("settings", settings.toReport());
+        report.put("requestsSent", requestsSent);
+        report.put("operations", operations);
+        report.put("writeBackDrainSeconds", drainDuration == null ? null : drainDuration.toMillis() / 1000.0);
+        report.put("timeline", timeline);
+        return report;
+    }
+
+    // Read from the sorted sets, scored by the time each person was queued, since the backlog gauge only changes when a
+    // write back run finishes
+    private WriteBackLag writeBackLag() {
+        var queued = 0L;
+        var oldestQueuedAt = Double.MAX_VALUE;
+
+        // Every registered partition, including those still draining after the amount was lowered, and the batches in
+        // flight on any node, the way the known IDs filter reads them
+        final var zSetOperations = stringRedisTemplate.opsForZSet();
+        final var amountOfPartitions = personWriteBackPartitions.register();
+        for (var partition = 0; partition < amountOfPartitions; partition++) {
+            final var keys = new ArrayList<String>();
+            keys.add(personCacheKeys.writeBackKey(partition));
+            final var inFlightKeys = zSetOperations.range(personCacheKeys.claimsKey(partition), 0, -1);
+            if (inFlightKeys != null) {
+                keys.addAll(inFlightKeys);
+            }
+
+            for (final var key : keys) {
+                queued += zSetOperations.zCard(key);
+                for (final var oldest : zSetOperations.rangeWithScores(key, 0, 0)) {
+                    oldestQueuedAt = Math.min(oldestQueuedAt, oldest.getScore());
+                }
+            }
+        }
+
+        final var oldestAge = queued == 0 ? 0 : (System.currentTimeMillis() - oldestQueuedAt) / 1000.0;
+        return new WriteBackLag(queued, oldestAge);
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        final var percentiles = new LinkedHashMap<String, Object>();
+        percentiles.put("mean", millis(histogram.getMean()));
+        for (final var percentile : PERCENTILES) {
+            percentiles.put("p" + String.valueOf(percentile).replace(".0", ""),
+                    millis(histogram.getValueAtPercentile(percentile)));
+        }
+        percentiles.put("max", millis(histogram.getMaxValue()));
+        return percentiles;
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1_000) / 1_000.0;
+    }
+
+    private record WriteBackLag(long queued, double oldestAgeSeconds) {
+    }
+
+    private enum Operation {
+        CREATE("create", 201),
+        FIND_ONE("findOne", 200);
+
+        private final String reportName;
+        private final int expectedStatus;
+
+        Operation(String reportName, int expectedStatus) {
+            this.reportName = reportName;
+            this.expectedStatus = expectedStatus;
+        }
+    }
+
+    private static final class OperationStatistics {
+
+        private final Recorder responseTimes = new Recorder(HIGHEST_TRACKABLE_LATENCY, 3);
+        private final Recorder serviceTimes = new Recorder(HIGHEST_TRACKABLE_LATENCY, 3);
+        private final Histogram responseTimesMeasured = new Histogram(HIGHEST_TRACKABLE_LATENCY, 3);
+        private final Histogram serviceTimesMeasured = new Histogram(HIGHEST_TRACKABLE_LATENCY, 3);
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    // Arguments such as --rate=2000, any other --name=value being passed on to the application as a property
+    private record Settings(int rate,
+                            Duration warmUp,
+                            Duration duration,
+                            double readRatio,
+                            int people,
+                            int hotPeople,
+                            double hotRatio,
+                            Duration drainTimeout,
+                            String[] profiles,
+                            Path report,
+                            Map<String, Object> applicationProperties) {
+
+        private static final Set<String> SETTINGS = Set.of("rate", "warm-up", "duration", "read-ratio", "people",
+                "hot-people", "hot-ratio", "drain-timeout", "profiles", "report");
+
+        private static Settings parse(String[] args) {
+            final var arguments = new HashMap<String, String>();
+            for (final var argument : args) {
+                final var separator = argument.indexOf('=');
+                if (!argument.startsWith("--") || separator < 0) {
+                    throw new IllegalArgumentException("Expected --name=value but got " + argument);
+                }
+                arguments.put(argument.substring(2, separator), argument.substring(separator + 1));
+            }
+
+            final var settings = new Settings(
+                    Integer.parseInt(arguments.getOrDefault("rate", "1000")),
+                    Duration.parse("PT" + arguments.getOrDefault("warm-up", "10s")),
+                    Duration.parse("PT" + arguments.getOrDefault("duration", "60s")),
+                    Double.parseDouble(arguments.getOrDefault("read-ratio", "0.8")),
+                    Integer.parseInt(arguments.getOrDefault("people", "10000")),
+                    Integer.parseInt(arguments.getOrDefault("hot-people", "100")),
+                    Double.parseDouble(arguments.getOrDefault("hot-ratio", "0.9")),
+                    Duration.parse("PT" + arguments.getOrDefault("drain-timeout", "60s")),
+                    Arrays.stream(arguments.getOrDefault("profiles", "").split(","))
+                            .filter(profile -> !profile.isBlank())
+                            .toArray(String[]::new),
+                    Path.of(arguments.getOrDefault("report", "build/results/load-test/report.json")),
+                    new HashMap<>());
+
+            // Unlike benchmarks, the load test keeps the write back running on its usual schedule
+            settings.applicationProperties.put("person-service.cache.write-back-rate", 1000);
+            settings.applicationProperties.put("person-service.cache.write-back-max-staleness", "30s");
+            settings.applicationProperties.put("person-service.cache.write-back-high-water-mark", 10_000);
+            arguments.forEach((name, value) -> {
+                if (name.contains(".")) {
+                    settings.applicationProperties.put(name, value);
+                } else if (!SETTINGS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown setting " + name);
+                }
+            });
+
+            if (settings.rate <= 0 || settings.people <= 0) {
+                throw new IllegalArgumentException("Rate and people must be positive");
+            }
+            return settings;
+        }
+
+        private Map<String, Object> toReport() {
+            final var report = new LinkedHashMap<String, Object>();
+            report.put("rate", rate);
+            report.put("warmUpSeconds", warmUp.toSeconds());
+            report.put("durationSeconds", duration.toSeconds());
+            report.put("readRatio", readRatio);
+            report.put("people", people);
+            report.put("hotPeople", hotPeople);
+            report.put("hotRatio", hotRatio);
+            report.put("profiles", profiles);
+            report.put("applicationProperties", applicationProperties);
+            return report;
+        }
+    }
+}
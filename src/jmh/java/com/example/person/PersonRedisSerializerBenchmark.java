@@ -0,0 +1,68 @@
+package com.example.person;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonRedisSerializerBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private PersonServiceCacheProperties.Serializer serializer;
+
+    private RedisSerializer<Person> personRedisSerializer;
+    private Person person;
+    private byte[] personSerialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final var cacheProperties = new PersonServiceCacheProperties();
+        cacheProperties.setSerializer(serializer);
+        personRedisSerializer = new PersonConfiguration().personRedisSerializer(cacheProperties);
+
+        person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("John Smith");
+        person.setAge(45);
+        personSerialized = personRedisSerializer.serialize(person);
+    }
+
+    @Benchmark
+    public byte[] serialize(SerializedSize serializedSize) {
+        final var bytes = personRedisSerializer.serialize(person);
+        serializedSize.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Person deserialize() {
+        return personRedisSerializer.deserialize(personSerialized);
+    }
+
+    // Reported as the secondary result "serialize:bytes", next to the time, so the size reaches the results file
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SerializedSize {
+
+        public long bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonServiceBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    private PersonServiceCacheProperties.Serializer serializer;
+
+    private PersonBenchmarkEnvironment environment;
+    private PersonService personService;
+    private StringRedisTemplate stringRedisTemplate;
+
+    private UUID personCachedId;
+    private UUID personPersistedId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = PersonBenchmarkEnvironment.start(Map.of("person-service.cache.serializer", serializer));
+        personService = environment.getBean(PersonService.class);
+        stringRedisTemplate = environment.getBean(StringRedisTemplate.class);
+
+        personCachedId = personService.create("John Smith", 45).getId();
+
+        final var personPersisted = new Person();
+        personPersisted.setId(UUID.randomUUID());
+        personPersisted.setName("Mary Jane");
+        personPersisted.setAge(32);
+        environment.getBean(PersonRepository.class).save(personPersisted);
+        personPersistedId = personPersisted.getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public Person findOneOnCache() {
+        return personService.findOne(personCachedId);
+    }
+
+    @Benchmark
+    public Person findOneOnDatabase(PersonEvicted personEvicted) {
+        return personService.findOne(personPersistedId);
+    }
+
+    @Benchmark
+    public Person create() {
+        return personService.create("John Smith", 45);
+    }
+
+    @State(Scope.Thread)
+    public static class PersonEvicted {
+
+        // Each miss needs the person evicted from cache first, which is why it is measured in microseconds
+        @Setup(Level.Invocation)
+        public void evict(PersonServiceBenchmark benchmark) {
+            benchmark.stringRedisTemplate.delete(benchmark.personPersistedId.toString());
+        }
+    }
+}
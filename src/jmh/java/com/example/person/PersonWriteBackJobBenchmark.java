@@ -0,0 +1,69 @@
+package com.example.person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersonWriteBackJobBenchmark {
+
+    private static final int CREATE_BATCH_SIZE = 1000;
+
+    @Param({"100", "1000", "10000"})
+    private int backlogSize;
+
+    private PersonBenchmarkEnvironment environment;
+    private PersonService personService;
+    private PersonWriteBackJob personWriteBackJob;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = PersonBenchmarkEnvironment.start(Map.of());
+        personService = environment.getBean(PersonService.class);
+        personWriteBackJob = environment.getBean(PersonWriteBackJob.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void fillBacklog() {
+        for (var created = 0; created < backlogSize; created += CREATE_BATCH_SIZE) {
+            final var people = new ArrayList<Person>();
+            for (var index = created; index < Math.min(created + CREATE_BATCH_SIZE, backlogSize); index++) {
+                final var person = new Person();
+                person.setName("John Smith");
+                person.setAge(45);
+                people.add(person);
+            }
+            personService.createAll(people);
+        }
+    }
+
+    @Benchmark
+    public void writeBack() {
+        personWriteBackJob.writeBack();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Many threads creating people, writing each one to Redis on its own or grouped by the write buffer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(1)
+public class PersonWriteBufferBenchmark {
+
+    @Param({"disabled", "REDIS", "BUFFER"})
+    private String writeBuffer;
+
+    private PersonBenchmarkEnvironment environment;
+    private PersonService personService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Map<String, Object> properties = writeBuffer.equals("disabled")
+                ? Map.of()
+                : Map.of(
+                "person-service.cache.write-buffer-enabled", true,
+                "person-service.cache.write-buffer-durability", writeBuffer
+        );
+        environment = PersonBenchmarkEnvironment.start(properties);
+        personService = environment.getBean(PersonService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public Person create() {
+        return personService.create("John Smith", 45);
+    }
+}
@@ -1,19 +1,24 @@
 package com.example.person;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.UUID;
 
+// Deleted people are kept as tombstone rows, never read as people
 @Entity
 @Table(name = "PERSON")
+@SQLRestriction("PERSON_DELETED = FALSE")
 @Data
 @NoArgsConstructor
 public class Person implements Serializable {
@@ -30,4 +35,32 @@ public class Person implements Serializable {
 
     @Column(name = "PERSON_AGE")
     private Integer age;
+
+    // Incremented on every change, so the database keeps the newest one whatever order they are written back in
+    @Column(name = "PERSON_VERSION")
+    private long version;
+
+    // A deleted person is cached as a tombstone until written back, then kept as a tombstone row in the database
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean deleted;
+
+    // The next version of this person, as changed by an update
+    public Person updated(String name, Integer age) {
+        final var personUpdated = new Person();
+        personUpdated.setId(id);
+        personUpdated.setVersion(version + 1);
+        personUpdated.setName(name);
+        personUpdated.setAge(age);
+        return personUpdated;
+    }
+
+    // The next version of this person, as changed by a delete
+    public Person tombstone() {
+        final var tombstone = new Person();
+        tombstone.setId(id);
+        tombstone.setVersion(version + 1);
+        tombstone.setDeleted(true);
+        return tombstone;
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.person;
+
+import reactor.core.publisher.Mono;
+
+public interface PersonBackpressure {
+
+    Admission admit(int amountOfPeople) throws PersonBackpressureException;
+
+    Mono<Admission> admitReactive(int amountOfPeople);
+
+    enum Admission {
+        WRITE_BACK,
+        WRITE_THROUGH
+    }
+}
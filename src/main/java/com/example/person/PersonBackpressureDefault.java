@@ -0,0 +1,200 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/*
+ * Pushes back on creates, updates and deletes once more people are waiting for write back than the high-water mark
+ * allows, which happens when the database falls behind. The backlog is sampled from the write back sets every sample
+ * interval, plus whatever this node queued since, so checking it costs nothing on the request path. Sampling runs on
+ * its own thread, since the shared scheduler is busy with the very write back that falls behind.
+ */
+public class PersonBackpressureDefault implements PersonBackpressure {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonBackpressureDefault.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final PersonWriteBackPartitions personWriteBackPartitions;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong sampledBacklog = new AtomicLong();
+    private final AtomicLong queuedSinceSample = new AtomicLong();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+            .name("person-backpressure")
+            .daemon()
+            .factory());
+
+    private final Counter throttledCounter;
+    private final Counter rejectedCounter;
+    private final Counter writtenThroughCounter;
+
+    public PersonBackpressureDefault(PersonServiceCacheProperties cacheProperties,
+                                     PersonCacheKeys personCacheKeys,
+                                     PersonWriteBackPartitions personWriteBackPartitions,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.personWriteBackPartitions = personWriteBackPartitions;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.throttledCounter = peopleCounter(meterRegistry, "throttled");
+        this.rejectedCounter = peopleCounter(meterRegistry, "rejected");
+        this.writtenThroughCounter = peopleCounter(meterRegistry, "written_through");
+    }
+
+    // Registered once constructed, since the gauges hold on to this policy
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("person.backpressure.backlog", this, PersonBackpressureDefault::getBacklog)
+                .description("People estimated to be waiting for write back, checked against the high-water mark")
+                .register(meterRegistry);
+        modeGauge("write_back", backpressure -> !backpressure.isEngaged());
+        modeGauge(cacheProperties.getBackpressurePolicy().name().toLowerCase(),
+                PersonBackpressureDefault::isEngaged);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        final var sampleInterval = cacheProperties.getBackpressureSampleInterval().toNanos();
+        sampler.scheduleWithFixedDelay(this::sample, 0, sampleInterval, TimeUnit.NANOSECONDS);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        sampler.shutdown();
+    }
+
+    @Override
+    public Admission admit(int amountOfPeople) throws PersonBackpressureException {
+        if (!isEngaged()) {
+            return queued(amountOfPeople);
+        }
+
+        return switch (cacheProperties.getBackpressurePolicy()) {
+            case NONE -> queued(amountOfPeople);
+            case WRITE_THROUGH -> writeThrough(amountOfPeople);
+            case REJECT -> throw reject(amountOfPeople);
+            case THROTTLE -> {
+                throttledCounter.increment(amountOfPeople);
+                final var deadline = System.nanoTime() + cacheProperties.getBackpressureMaxThrottle().toNanos();
+                while (isEngaged() && System.nanoTime() < deadline) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(throttleInterval(deadline));
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        throw reject(amountOfPeople);
+                    }
+                }
+                if (isEngaged()) {
+                    throw reject(amountOfPeople);
+                }
+                yield queued(amountOfPeople);
+            }
+        };
+    }
+
+    @Override
+    public Mono<Admission> admitReactive(int amountOfPeople) {
+        return Mono.defer(() -> {
+            if (!isEngaged()) {
+                return Mono.just(queued(amountOfPeople));
+            }
+
+            return switch (cacheProperties.getBackpressurePolicy()) {
+                case NONE -> Mono.just(queued(amountOfPeople));
+                case WRITE_THROUGH -> Mono.just(writeThrough(amountOfPeople));
+                case REJECT -> Mono.error(reject(amountOfPeople));
+                case THROTTLE -> {
+                    throttledCounter.increment(amountOfPeople);
+                    final var deadline = System.nanoTime() + cacheProperties.getBackpressureMaxThrottle().toNanos();
+                    // Waits on a timer instead of a thread, checking again every time the backlog is sampled
+                    yield Mono.fromSupplier(this::isEngaged)
+                            .filter(engaged -> !engaged)
+                            .repeatWhenEmpty(repeats -> repeats
+                                    .takeWhile(repeat -> System.nanoTime() < deadline)
+                                    .concatMap(repeat -> Mono.delay(Duration.ofNanos(throttleInterval(deadline)))))
+                            .map(engaged -> queued(amountOfPeople))
+                            .switchIfEmpty(Mono.error(() -> reject(amountOfPeople)));
+                }
+            };
+        });
+    }
+
+    private boolean isEngaged() {
+        return getBacklog() >= cacheProperties.getBackpressureHighWaterMark();
+    }
+
+    private long getBacklog() {
+        return sampledBacklog.get() + queuedSinceSample.get();
+    }
+
+    private Admission queued(int amountOfPeople) {
+        queuedSinceSample.addAndGet(amountOfPeople);
+        return Admission.WRITE_BACK;
+    }
+
+    private Admission writeThrough(int amountOfPeople) {
+        writtenThroughCounter.increment(amountOfPeople);
+        return Admission.WRITE_THROUGH;
+    }
+
+    private PersonBackpressureException reject(int amountOfPeople) {
+        rejectedCounter.increment(amountOfPeople);
+        return new PersonBackpressureException(getBacklog(), cacheProperties.getBackpressureRetryAfter());
+    }
+
+    // The backlog only goes down when sampled, so there is no point in checking it more often
+    private long throttleInterval(long deadline) {
+        return Math.max(0, Math.min(cacheProperties.getBackpressureSampleInterval().toNanos(), deadline - System.nanoTime()));
+    }
+
+    private void sample() {
+        // People queued while sampling may be counted twice until the next sample
+        final var queuedBeforeSample = queuedSinceSample.get();
+        try {
+            var backlog = 0L;
+            for (var partition = 0; partition < personWriteBackPartitions.getAmountOfPartitions(); partition++) {
+                final var amountOfPeopleQueued = stringRedisTemplate.opsForZSet().zCard(personCacheKeys.writeBackKey(partition));
+                backlog += amountOfPeopleQueued == null ? 0 : amountOfPeopleQueued;
+            }
+
+            sampledBacklog.set(backlog);
+            queuedSinceSample.addAndGet(-queuedBeforeSample);
+        } catch (RuntimeException exception) {
+            LOGGER.debug("Could not sample the write back backlog, keeping the last estimate", exception);
+        }
+    }
+
+    private void modeGauge(String mode, Predicate<PersonBackpressureDefault> active) {
+        Gauge.builder("person.backpressure.mode", this, backpressure -> active.test(backpressure) ? 1 : 0)
+                .description("Whether changes are written back as usual or handled by the backpressure policy")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    private static Counter peopleCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("person.backpressure.people")
+                .description("People created or changed while the write back was behind, by how they were handled")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
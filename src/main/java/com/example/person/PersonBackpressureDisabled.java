@@ -0,0 +1,16 @@
+package com.example.person;
+
+import reactor.core.publisher.Mono;
+
+public class PersonBackpressureDisabled implements PersonBackpressure {
+
+    @Override
+    public Admission admit(int amountOfPeople) {
+        return Admission.WRITE_BACK;
+    }
+
+    @Override
+    public Mono<Admission> admitReactive(int amountOfPeople) {
+        return Mono.just(Admission.WRITE_BACK);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.person;
+
+import java.io.Serial;
+import java.time.Duration;
+
+public final class PersonBackpressureException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = -3180942744785622214L;
+
+    private final Duration retryAfter;
+
+    // Thrown for every request shed under overload, so it skips filling in a stack trace nobody reads
+    public PersonBackpressureException(long backlog, Duration retryAfter) {
+        super("Too many people waiting for write back (backlog=" + backlog + ")", null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.person;
+
+import java.time.Duration;
+import java.util.Collection;
+
+public interface PersonBatchRepository {
+
+    // Deleted people are written as tombstones, so they are versioned like any other change
+    void upsertAll(Collection<Person> people);
+
+    // Tombstones are compared against the database clock, so nodes with skewed clocks agree on which ones are old
+    int purgeTombstones(Duration olderThan, int limit);
+}
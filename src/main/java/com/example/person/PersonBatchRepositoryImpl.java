@@ -0,0 +1,54 @@
+package com.example.person;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.time.Duration;
+import java.util.Collection;
+
+public class PersonBatchRepositoryImpl implements PersonBatchRepository {
+
+    // A deleted person is kept as a tombstone row with its version, so an older copy written back after it is ignored
+    private static final String UPSERT_SQL = """
+            INSERT INTO PERSON (PERSON_ID, PERSON_NAME, PERSON_AGE, PERSON_VERSION, PERSON_DELETED)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (PERSON_ID) DO UPDATE
+            SET PERSON_NAME       = EXCLUDED.PERSON_NAME,
+                PERSON_AGE        = EXCLUDED.PERSON_AGE,
+                PERSON_VERSION    = EXCLUDED.PERSON_VERSION,
+                PERSON_DELETED    = EXCLUDED.PERSON_DELETED,
+                PERSON_UPDATED_AT = now()
+            WHERE PERSON.PERSON_VERSION < EXCLUDED.PERSON_VERSION
+            """;
+
+    private static final String PURGE_SQL = """
+            DELETE FROM PERSON
+            WHERE PERSON_ID IN (SELECT PERSON_ID
+                                FROM PERSON
+                                WHERE PERSON_DELETED = TRUE
+                                  AND PERSON_UPDATED_AT < now() - ? * INTERVAL '1 millisecond'
+                                LIMIT ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PersonBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void upsertAll(Collection<Person> people) {
+        jdbcTemplate.batchUpdate(UPSERT_SQL, people, people.size(), (statement, person) -> {
+            statement.setObject(1, person.getId());
+            statement.setString(2, person.getName());
+            statement.setObject(3, person.getAge(), Types.INTEGER);
+            statement.setLong(4, person.getVersion());
+            statement.setBoolean(5, person.isDeleted());
+        });
+    }
+
+    @Override
+    public int purgeTombstones(Duration olderThan, int limit) {
+        return jdbcTemplate.update(PURGE_SQL, olderThan.toMillis(), limit);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.person;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary layout: format version (1 byte), ID (16 bytes), version (varint), age (varint), name length (varint),
+ * name (UTF-8). Format 1 has no version, which is read as 0, and tombstones of deleted people stop after the version.
+ * Values not starting with a known format version are handed to the fallback serializer, so entries written in a
+ * previous format stay readable while the cache is migrated.
+ */
+public class PersonBinaryRedisSerializer implements RedisSerializer<Person> {
+
+    static final byte FORMAT_VERSION = 2;
+
+    private static final byte UNVERSIONED_FORMAT_VERSION = 1;
+
+    private static final byte TOMBSTONE_FORMAT_VERSION = 3;
+
+    private final RedisSerializer<Person> fallbackSerializer;
+
+    public PersonBinaryRedisSerializer(RedisSerializer<Person> fallbackSerializer) {
+        this.fallbackSerializer = fallbackSerializer;
+    }
+
+    @Override
+    public byte[] serialize(Person person) throws SerializationException {
+        if (person == null) {
+            return new byte[0];
+        }
+        if (person.isDeleted() && person.getId() != null) {
+            return serializeTombstone(person);
+        }
+        if (person.getId() == null || person.getName() == null || person.getAge() == null) {
+            throw new SerializationException("Cannot serialize incomplete person " + person);
+        }
+
+        final var name = person.getName().getBytes(StandardCharsets.UTF_8);
+        final var bytes = new byte[1 + 16 + varLongSize(person.getVersion()) + varIntSize(person.getAge())
+                + varIntSize(name.length) + name.length];
+
+        var position = 0;
+        bytes[position++] = FORMAT_VERSION;
+        position = writeLong(bytes, position, person.getId().getMostSignificantBits());
+        position = writeLong(bytes, position, person.getId().getLeastSignificantBits());
+        position = writeVarLong(bytes, position, person.getVersion());
+        position = writeVarInt(bytes, position, person.getAge());
+        position = writeVarInt(bytes, position, name.length);
+        System.arraycopy(name, 0, bytes, position, name.length);
+
+        return bytes;
+    }
+
+    @Override
+    public Person deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == TOMBSTONE_FORMAT_VERSION) {
+            return deserializeTombstone(bytes);
+        }
+        if (bytes[0] != FORMAT_VERSION && bytes[0] != UNVERSIONED_FORMAT_VERSION) {
+            return fallbackSerializer.deserialize(bytes);
+        }
+
+        try {
+            final var position = new int[]{1};
+            final var id = new UUID(readLong(bytes, position), readLong(bytes, position));
+            final var version = bytes[0] == FORMAT_VERSION ? readVarLong(bytes, position) : 0;
+            final var age = readVarInt(bytes, position);
+            final var nameLength = readVarInt(bytes, position);
+
+            final var person = new Person();
+            person.setId(id);
+            person.setVersion(version);
+            person.setAge(age);
+            person.setName(new String(bytes, position[0], nameLength, StandardCharsets.UTF_8));
+
+            return person;
+        } catch (IndexOutOfBoundsException exception) {
+            throw new SerializationException("Cannot deserialize truncated person", exception);
+        }
+    }
+
+    private static byte[] serializeTombstone(Person person) {
+        final var bytes = new byte[1 + 16 + varLongSize(person.getVersion())];
+
+        var position = 0;
+        bytes[position++] = TOMBSTONE_FORMAT_VERSION;
+        position = writeLong(bytes, position, person.getId().getMostSignificantBits());
+        position = writeLong(bytes, position, person.getId().getLeastSignificantBits());
+        writeVarLong(bytes, position, person.getVersion());
+
+        return bytes;
+    }
+
+    private static Person deserializeTombstone(byte[] bytes) {
+        try {
+            final var position = new int[]{1};
+            final var person = new Person();
+            person.setId(new UUID(readLong(bytes, position), readLong(bytes, position)));
+            person.setVersion(readVarLong(bytes, position));
+            person.setDeleted(true);
+
+            return person;
+        } catch (IndexOutOfBoundsException exception) {
+            throw new SerializationException("Cannot deserialize truncated person tombstone", exception);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Person.class;
+    }
+
+    private static int writeLong(byte[] bytes, int position, long value) {
+        for (var shift = 56; shift >= 0; shift -= 8) {
+            bytes[position++] = (byte) (value >>> shift);
+        }
+        return position;
+    }
+
+    private static long readLong(byte[] bytes, int[] position) {
+        var value = 0L;
+        for (var index = 0; index < 8; index++) {
+            value = (value << 8) | (bytes[position[0]++] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int varLongSize(long value) {
+        var size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarLong(byte[] bytes, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        var value = 0L;
+        for (var shift = 0; shift < 64; shift += 7) {
+            final var current = bytes[position[0]++];
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in serialized person");
+    }
+
+    private static int varIntSize(int value) {
+        var size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        var value = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            final var current = bytes[position[0]++];
+            value |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in serialized person");
+    }
+}
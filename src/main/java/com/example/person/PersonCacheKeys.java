@@ -0,0 +1,63 @@
+package com.example.person;
+
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+public class PersonCacheKeys {
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final boolean clustered;
+
+    public PersonCacheKeys(PersonServiceCacheProperties cacheProperties, RedisConnectionDetails redisConnectionDetails) {
+        this.cacheProperties = cacheProperties;
+        this.clustered = redisConnectionDetails.getCluster() != null;
+    }
+
+    // Untagged, so people spread over every Redis Cluster slot and keep their keys when the partitions change
+    public String personKey(UUID personId) {
+        return personId.toString();
+    }
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    public String notFoundKey(UUID personId) {
+        return personKey(personId) + ":not_found";
+    }
+
+    public String loadLockKey(UUID personId) {
+        return personKey(personId) + ":loading";
+    }
+
+    // Follows this node's setting, so while nodes disagree on it, or partitions above a lowered one drain, a person may
+    // be queued on two partitions and flushed by two workers at once. Only the versioned upsert keeps an older copy
+    // from overwriting a newer one then
+    public int partitionOf(UUID personId) {
+        return Math.floorMod(personId.hashCode(), cacheProperties.getWriteBackPartitions());
+    }
+
+    public String writeBackKey(UUID personId) {
+        return writeBackKey(partitionOf(personId));
+    }
+
+    // The partition is a hash tag, so every key of a partition lives on the same Redis Cluster slot
+    public String writeBackKey(int partition) {
+        return cacheProperties.getWriteBackKey() + ":{" + partition + "}";
+    }
+
+    public String partitionsKey() {
+        return cacheProperties.getWriteBackKey() + ":partitions";
+    }
+
+    public String inFlightKey(int partition) {
+        return writeBackKey(partition) + ":in_flight:" + cacheProperties.getNodeId();
+    }
+
+    public String claimsKey(int partition) {
+        return writeBackKey(partition) + ":claims";
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.person;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+@Component
+public class PersonCacheMaxMemoryPolicyCheck {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonCacheMaxMemoryPolicyCheck.class);
+
+    private static final String MAX_MEMORY_POLICY = "maxmemory-policy";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public PersonCacheMaxMemoryPolicyCheck(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    // People waiting for write back have no time to live, which only volatile policies are guaranteed to respect
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkMaxMemoryPolicy() {
+        try {
+            final var config = stringRedisTemplate.execute(
+                    (RedisCallback<Properties>) connection -> connection.serverCommands().getConfig(MAX_MEMORY_POLICY)
+            );
+            final var policy = config == null ? null : config.getProperty(MAX_MEMORY_POLICY);
+            if (policy != null && policy.startsWith("allkeys-")) {
+                LOGGER.warn("Redis may evict people not written back yet under {} {}, use volatile-lru or volatile-ttl",
+                        MAX_MEMORY_POLICY, policy);
+            }
+        } catch (DataAccessException exception) {
+            // Managed Redis services often disable CONFIG
+            LOGGER.debug("Could not read Redis {}", MAX_MEMORY_POLICY, exception);
+        }
+    }
+}
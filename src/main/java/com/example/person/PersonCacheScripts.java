@@ -0,0 +1,347 @@
+package com.example.person;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.connection.ReactiveScriptingCommands;
+import org.springframework.data.redis.connection.ReactiveZSetCommands;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the cache scripts shared by the blocking and the reactive services, building their keys and arguments and
+ * deserializing their results in one place. Spring's script executors give lists back raw, so scripts returning lists
+ * are evaluated on the connection instead. Like those executors, a script is sent again only when Redis does not know
+ * its SHA yet.
+ */
+@Component
+public class PersonCacheScripts {
+
+    private static final RedisScript<Object> GET_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_cache_get.lua"));
+
+    private static final RedisScript<Object> CHANGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_cache_change.lua"));
+
+    private static final RedisScript<Object> EXPIRE_FLUSHED_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_cache_expire_flushed.lua"));
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final RedisSerializer<Person> personRedisSerializer;
+
+    public PersonCacheScripts(PersonServiceCacheProperties cacheProperties,
+                              PersonCacheKeys personCacheKeys,
+                              StringRedisTemplate stringRedisTemplate,
+                              ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                              RedisSerializer<Person> personRedisSerializer) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.personRedisSerializer = personRedisSerializer;
+    }
+
+    // People are given back in the order of their keys, with null for those not cached. On Redis Cluster the keys are
+    // read one slot at a time, with the scripts of every slot sent together
+    public List<Person> get(List<String> personKeys) {
+        final var personKeysBySlot = bySlot(personKeys);
+        if (personKeysBySlot.size() == 1) {
+            return getOnSlot(personKeys);
+        }
+
+        final var slidingTtl = String.valueOf(slidingTtl());
+        final List<List<ByteBuffer>> valuesBySlot = onEverySlot(personKeysBySlot, personKeysOnSlot ->
+                reactiveStringRedisTemplate.execute(connection -> PersonCacheScripts.<List<ByteBuffer>>evalReactive(
+                                connection.scriptingCommands(), GET_SCRIPT, ReturnType.MULTI, personKeysOnSlot.size(),
+                                keysAndArgs(personKeysOnSlot, slidingTtl)))
+                        .next());
+
+        final var peopleByKey = new HashMap<String, Person>();
+        for (var slot = 0; slot < personKeysBySlot.size(); slot++) {
+            final var personKeysOnSlot = personKeysBySlot.get(slot);
+            final var valuesOnSlot = valuesBySlot.get(slot);
+            for (var index = 0; index < personKeysOnSlot.size(); index++) {
+                final var personValue = valuesOnSlot.get(index);
+                peopleByKey.put(personKeysOnSlot.get(index),
+                        personValue == null ? null : personRedisSerializer.deserialize(ByteUtils.getBytes(personValue)));
+            }
+        }
+
+        return personKeys.stream()
+                .map(peopleByKey::get)
+                .toList();
+    }
+
+    public Mono<Person> getReactive(String personKey) {
+        final var keysAndArgs = keysAndArgs(List.of(personKey), String.valueOf(slidingTtl()));
+
+        final Flux<List<ByteBuffer>> values = reactiveStringRedisTemplate.execute(connection ->
+                evalReactive(connection.scriptingCommands(), GET_SCRIPT, ReturnType.MULTI, 1, keysAndArgs));
+
+        return values.next()
+                .mapNotNull(personValues -> personValues.get(0))
+                .mapNotNull(personValue -> personRedisSerializer.deserialize(ByteUtils.getBytes(personValue)));
+    }
+
+    // Read as cached, since a change is applied only if the person still has this exact value. Empty if not cached
+    public byte[] getForChange(UUID personId) {
+        final var personCached = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(personKeyOf(personId)));
+
+        return personCached != null ? personCached : new byte[0];
+    }
+
+    public Mono<byte[]> getForChangeReactive(UUID personId) {
+        return reactiveStringRedisTemplate
+                .execute(connection -> connection.stringCommands().get(ByteBuffer.wrap(personKeyOf(personId))))
+                .next()
+                .map(ByteUtils::getBytes)
+                .defaultIfEmpty(new byte[0]);
+    }
+
+    public Person deserialize(byte[] personCached) {
+        return personRedisSerializer.deserialize(personCached);
+    }
+
+    // Applied only if no other change was cached since the person was read, otherwise the caller reads it again. On
+    // Redis Cluster the write back set is on another slot than the person, so the person is queued around the script:
+    // before it, so a change made on a node failing right after is still written back, and again after it, in case a
+    // flush took the person off the set in between
+    public boolean change(byte[] personCached, Person personChanged) {
+        if (!personCacheKeys.isClustered()) {
+            return Long.valueOf(1).equals(evalChange(personCached, personChanged, true));
+        }
+
+        queue(personChanged.getId());
+        final var changed = Long.valueOf(1).equals(evalChange(personCached, personChanged, false));
+        if (changed) {
+            queue(personChanged.getId());
+        }
+        return changed;
+    }
+
+    public Mono<Boolean> changeReactive(byte[] personCached, Person personChanged) {
+        if (!personCacheKeys.isClustered()) {
+            return evalChangeReactive(personCached, personChanged, true);
+        }
+
+        return queueReactive(personChanged.getId())
+                .then(evalChangeReactive(personCached, personChanged, false))
+                .flatMap(changed -> changed
+                        ? queueReactive(personChanged.getId()).thenReturn(true)
+                        : Mono.just(false));
+    }
+
+    // Applied the same way, but without queueing the person, for a change written through to the database right after
+    public boolean changeUnqueued(byte[] personCached, Person personChanged) {
+        return Long.valueOf(1).equals(evalChange(personCached, personChanged, false));
+    }
+
+    public Mono<Boolean> changeUnqueuedReactive(byte[] personCached, Person personChanged) {
+        return evalChangeReactive(personCached, personChanged, false);
+    }
+
+    public void queue(UUID personId) {
+        stringRedisTemplate.opsForZSet().addIfAbsent(personCacheKeys.writeBackKey(personId), personId.toString(),
+                System.currentTimeMillis());
+    }
+
+    public Mono<Void> queueReactive(UUID personId) {
+        final var tuple = new DefaultTuple(personId.toString().getBytes(StandardCharsets.UTF_8),
+                (double) System.currentTimeMillis());
+        final var command = ReactiveZSetCommands.ZAddCommand.tuple(tuple)
+                .nx()
+                .to(ByteBuffer.wrap(personCacheKeys.writeBackKey(personId).getBytes(StandardCharsets.UTF_8)));
+
+        return reactiveStringRedisTemplate.execute(connection -> connection.zSetCommands().zAdd(Mono.just(command)))
+                .then();
+    }
+
+    // Once persisted, people are clean and may expire or be evicted, unless they changed while being flushed
+    public void expireFlushed(List<Person> peopleFlushed) {
+        final var peopleByKey = peopleFlushed.stream()
+                .collect(Collectors.toMap(person -> personCacheKeys.personKey(person.getId()), Function.identity()));
+        final var ttl = String.valueOf(cacheProperties.getCleanTtl().toMillis()).getBytes(StandardCharsets.UTF_8);
+
+        final var personKeysBySlot = bySlot(List.copyOf(peopleByKey.keySet()));
+        final var keysAndArgsBySlot = personKeysBySlot.stream()
+                .map(personKeysOnSlot -> {
+                    final var keysAndArgs = new byte[personKeysOnSlot.size() * 2 + 1][];
+                    keysAndArgs[personKeysOnSlot.size()] = ttl;
+                    for (var index = 0; index < personKeysOnSlot.size(); index++) {
+                        final var personKey = personKeysOnSlot.get(index);
+                        keysAndArgs[index] = personKey.getBytes(StandardCharsets.UTF_8);
+                        keysAndArgs[personKeysOnSlot.size() + 1 + index] =
+                                personRedisSerializer.serialize(peopleByKey.get(personKey));
+                    }
+                    return keysAndArgs;
+                })
+                .toList();
+
+        if (keysAndArgsBySlot.size() == 1) {
+            final var keysAndArgs = keysAndArgsBySlot.get(0);
+            stringRedisTemplate.execute((RedisCallback<Long>) connection -> eval(connection.scriptingCommands(),
+                    EXPIRE_FLUSHED_SCRIPT, ReturnType.INTEGER, peopleByKey.size(), keysAndArgs));
+            return;
+        }
+
+        onEverySlot(keysAndArgsBySlot, keysAndArgs ->
+                reactiveStringRedisTemplate.execute(connection -> PersonCacheScripts.<Long>evalReactive(
+                                connection.scriptingCommands(), EXPIRE_FLUSHED_SCRIPT, ReturnType.INTEGER,
+                                (keysAndArgs.length - 1) / 2, keysAndArgs))
+                        .next());
+    }
+
+    public List<byte[]> evalList(RedisScript<?> script, List<String> keys, String... args) {
+        final var keysAndArgs = keysAndArgs(keys, args);
+
+        final List<byte[]> values = stringRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                eval(connection.scriptingCommands(), script, ReturnType.MULTI, keys.size(), keysAndArgs));
+        assert values != null;
+
+        return values;
+    }
+
+    // Reading a clean person gives it a full time to live again, so only people not read for a while expire
+    private List<Person> getOnSlot(List<String> personKeys) {
+        final var values = evalList(GET_SCRIPT, personKeys, String.valueOf(slidingTtl()));
+
+        return values.stream()
+                .map(personRedisSerializer::deserialize)
+                .toList();
+    }
+
+    private long slidingTtl() {
+        return cacheProperties.isCleanTtlSliding() ? cacheProperties.getCleanTtl().toMillis() : 0;
+    }
+
+    private byte[] personKeyOf(UUID personId) {
+        return personCacheKeys.personKey(personId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Long evalChange(byte[] personCached, Person personChanged, boolean queued) {
+        final var keysAndArgs = changeKeysAndArgs(personCached, personChanged, queued);
+
+        return stringRedisTemplate.execute((RedisCallback<Long>) connection -> eval(connection.scriptingCommands(),
+                CHANGE_SCRIPT, ReturnType.INTEGER, queued ? 2 : 1, keysAndArgs));
+    }
+
+    private Mono<Boolean> evalChangeReactive(byte[] personCached, Person personChanged, boolean queued) {
+        final var keysAndArgs = changeKeysAndArgs(personCached, personChanged, queued);
+
+        final Flux<Long> changed = reactiveStringRedisTemplate.execute(connection -> evalReactive(
+                connection.scriptingCommands(), CHANGE_SCRIPT, ReturnType.INTEGER, queued ? 2 : 1, keysAndArgs));
+
+        return changed.next()
+                .map(amountChanged -> amountChanged == 1)
+                .defaultIfEmpty(false);
+    }
+
+    // A script only runs on a single Redis Cluster slot, so keys spread over several are split by slot there
+    private List<List<String>> bySlot(List<String> keys) {
+        if (!personCacheKeys.isClustered() || keys.size() == 1) {
+            return List.of(keys);
+        }
+
+        return List.copyOf(keys.stream()
+                .collect(Collectors.groupingBy(ClusterSlotHashUtil::calculateSlot, LinkedHashMap::new, Collectors.toList()))
+                .values());
+    }
+
+    // Untagged person keys spread a batch over about as many slots as people. Commands sent without waiting for each
+    // other are pipelined by Lettuce on the connection of each cluster node, so the batch takes a round trip per node
+    // instead of one per slot. Results are given back in the order of the slots
+    private static <S, T> List<T> onEverySlot(List<S> slots, Function<S, Mono<T>> runOnSlot) {
+        return Flux.fromIterable(slots)
+                .flatMapSequential(runOnSlot)
+                .collectList()
+                .block();
+    }
+
+    private byte[][] changeKeysAndArgs(byte[] personCached, Person personChanged, boolean queued) {
+        final var personId = personChanged.getId();
+        final var keys = queued
+                ? List.of(personKeyOf(personId), personCacheKeys.writeBackKey(personId).getBytes(StandardCharsets.UTF_8))
+                : List.of(personKeyOf(personId));
+        final var args = List.of(
+                personCached,
+                personRedisSerializer.serialize(personChanged),
+                personId.toString().getBytes(StandardCharsets.UTF_8),
+                String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8)
+        );
+
+        return Stream.concat(keys.stream(), args.stream()).toArray(byte[][]::new);
+    }
+
+    private static <T> T eval(RedisScriptingCommands scriptingCommands, RedisScript<?> script, ReturnType returnType,
+                              int numKeys, byte[][] keysAndArgs) {
+        try {
+            return scriptingCommands.evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+        } catch (DataAccessException exception) {
+            if (!isNoScript(exception)) {
+                throw exception;
+            }
+            return scriptingCommands.eval(script.getScriptAsString().getBytes(StandardCharsets.UTF_8),
+                    returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    // Buffers are wrapped for each call, since evaluating a script consumes them
+    private static <T> Flux<T> evalReactive(ReactiveScriptingCommands scriptingCommands, RedisScript<?> script,
+                                            ReturnType returnType, int numKeys, byte[][] keysAndArgs) {
+        return scriptingCommands.<T>evalSha(script.getSha1(), returnType, numKeys, buffers(keysAndArgs))
+                .onErrorResume(PersonCacheScripts::isNoScript, exception -> scriptingCommands.eval(
+                        ByteBuffer.wrap(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)),
+                        returnType, numKeys, buffers(keysAndArgs)));
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, String... args) {
+        final var keysAndArgs = new byte[keys.size() + args.length][];
+        for (var index = 0; index < keys.size(); index++) {
+            keysAndArgs[index] = keys.get(index).getBytes(StandardCharsets.UTF_8);
+        }
+        for (var index = 0; index < args.length; index++) {
+            keysAndArgs[keys.size() + index] = args[index].getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    private static ByteBuffer[] buffers(byte[][] keysAndArgs) {
+        return Arrays.stream(keysAndArgs)
+                .map(ByteBuffer::wrap)
+                .toArray(ByteBuffer[]::new);
+    }
+
+    private static boolean isNoScript(Throwable exception) {
+        for (var cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Loads the most recently updated people into the cache after startup, one page at a time, so the first requests after
+// a deploy or a Redis failover do not all fall through to the database. Readiness is held until enough are loaded
+@Component
+public class PersonCacheWarmUp implements HealthIndicator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonCacheWarmUp.class);
+
+    private static final String COUNT_SQL = "SELECT count(*) FROM (SELECT 1 FROM PERSON WHERE PERSON_DELETED = FALSE LIMIT ?) AS PEOPLE";
+
+    private static final String FIRST_PAGE_SQL = """
+            SELECT PERSON_ID, PERSON_NAME, PERSON_AGE, PERSON_VERSION, PERSON_UPDATED_AT
+            FROM PERSON
+            WHERE PERSON_DELETED = FALSE
+            ORDER BY PERSON_UPDATED_AT DESC, PERSON_ID DESC
+            LIMIT ?
+            """;
+
+    // Keyset pagination reads each page from the index where the previous one ended, instead of skipping an offset
+    private static final String NEXT_PAGE_SQL = """
+            SELECT PERSON_ID, PERSON_NAME, PERSON_AGE, PERSON_VERSION, PERSON_UPDATED_AT
+            FROM PERSON
+            WHERE PERSON_DELETED = FALSE
+              AND (PERSON_UPDATED_AT, PERSON_ID) < (?, ?)
+            ORDER BY PERSON_UPDATED_AT DESC, PERSON_ID DESC
+            LIMIT ?
+            """;
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final RedisTemplate<String, Person> personRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong amountOfPeopleLoaded = new AtomicLong();
+    private volatile long amountOfPeopleToLoad = -1;
+    private volatile boolean finished;
+
+    public PersonCacheWarmUp(PersonServiceCacheProperties cacheProperties,
+                             PersonCacheKeys personCacheKeys,
+                             RedisTemplate<String, Person> personRedisTemplate,
+                             JdbcTemplate jdbcTemplate,
+                             MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.personRedisTemplate = personRedisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        meterRegistry.gauge("person.cache.warm_up.loaded", amountOfPeopleLoaded);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (cacheProperties.isWarmUpEnabled()) {
+            Thread.ofVirtual()
+                    .name("person-cache-warm-up")
+                    .start(this::warmUp);
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (!cacheProperties.isWarmUpEnabled()) {
+            return Health.up().build();
+        }
+
+        final var loaded = amountOfPeopleLoaded.get();
+        final var toLoad = amountOfPeopleToLoad;
+        final var health = finished || (toLoad >= 0 && loaded * 100 >= toLoad * cacheProperties.getWarmUpReadyPercentage())
+                ? Health.up()
+                : Health.outOfService();
+
+        return health
+                .withDetail("loaded", loaded)
+                .withDetail("toLoad", toLoad)
+                .withDetail("finished", finished)
+                .build();
+    }
+
+    private void warmUp() {
+        final var maxPeople = cacheProperties.getWarmUpMaxPeople();
+        final var pageSize = cacheProperties.getWarmUpPageSize();
+        final var startedAt = System.nanoTime();
+
+        try {
+            final Long amountOfPeople = jdbcTemplate.queryForObject(COUNT_SQL, Long.class, maxPeople);
+            amountOfPeopleToLoad = amountOfPeople == null ? 0 : amountOfPeople;
+
+            var page = findPage(null, Math.min(pageSize, maxPeople));
+            while (!page.people().isEmpty()) {
+                load(page.people());
+
+                final var remaining = maxPeople - amountOfPeopleLoaded.get();
+                if (remaining <= 0 || page.people().size() < pageSize) {
+                    break;
+                }
+                page = findPage(page, (int) Math.min(pageSize, remaining));
+            }
+
+            LOGGER.info("Cache warmed up (loaded={}, duration={}ms)", amountOfPeopleLoaded.get(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (RuntimeException exception) {
+            // A cold cache is slower but still correct, so readiness is not held forever
+            LOGGER.error("Cache warm up stopped (loaded={})", amountOfPeopleLoaded.get(), exception);
+        } finally {
+            finished = true;
+        }
+    }
+
+    private Page findPage(Page previousPage, long limit) {
+        final var people = new ArrayList<Person>();
+        final var lastUpdatedAt = new Timestamp[1];
+
+        final var sql = previousPage == null ? FIRST_PAGE_SQL : NEXT_PAGE_SQL;
+        final var arguments = previousPage == null
+                ? new Object[]{limit}
+                : new Object[]{previousPage.lastUpdatedAt(), previousPage.lastId(), limit};
+        jdbcTemplate.query(sql, resultSet -> {
+            final var person = new Person();
+            person.setId(resultSet.getObject(1, UUID.class));
+            person.setName(resultSet.getString(2));
+            person.setAge(resultSet.getInt(3));
+            person.setVersion(resultSet.getLong(4));
+            people.add(person);
+            lastUpdatedAt[0] = resultSet.getTimestamp(5);
+        }, arguments);
+
+        return new Page(people, lastUpdatedAt[0], people.isEmpty() ? null : people.get(people.size() - 1).getId());
+    }
+
+    // Set only if absent and never queued, so a change waiting for write back is neither overwritten nor written again
+    private void load(List<Person> people) {
+        personRedisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                for (final var person : people) {
+                    personRedisTemplate.opsForValue()
+                            .setIfAbsent(personCacheKeys.personKey(person.getId()), person, cacheProperties.getCleanTtl());
+                }
+                return null;
+            }
+        });
+        amountOfPeopleLoaded.addAndGet(people.size());
+    }
+
+    private record Page(List<Person> people, Timestamp lastUpdatedAt, UUID lastId) {
+    }
+}
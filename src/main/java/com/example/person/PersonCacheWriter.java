@@ -0,0 +1,128 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Component
+public class PersonCacheWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonCacheWriter.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final RedisTemplate<String, Person> personRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PersonJournal personJournal;
+    private final PersonRepository personRepository;
+
+    private final Counter journaledCounter;
+
+    public PersonCacheWriter(PersonServiceCacheProperties cacheProperties,
+                             PersonCacheKeys personCacheKeys,
+                             RedisTemplate<String, Person> personRedisTemplate,
+                             StringRedisTemplate stringRedisTemplate,
+                             PersonJournal personJournal,
+                             PersonRepository personRepository,
+                             MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.personRedisTemplate = personRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.personJournal = personJournal;
+        this.personRepository = personRepository;
+        this.journaledCounter = PersonServiceMeters.journaledCounter(meterRegistry);
+    }
+
+    // Journals the people when Redis cannot take them, so creating people keeps working through a Redis outage
+    public void write(List<Person> people) {
+        try {
+            writeToRedis(people);
+        } catch (DataAccessException exception) {
+            if (!cacheProperties.isJournalEnabled()) {
+                throw exception;
+            }
+
+            personJournal.append(people);
+            journaledCounter.increment(people.size());
+            LOGGER.debug("People journaled while Redis is unavailable (amount={})", people.size(), exception);
+        }
+    }
+
+    // Caches the people and queues them for write back in a single round trip
+    public void writeToRedis(List<Person> people) {
+        final var queuedAt = (double) System.currentTimeMillis();
+        final Map<String, Set<ZSetOperations.TypedTuple<String>>> personIdsByWriteBackKey = people.stream()
+                .collect(Collectors.groupingBy(
+                        person -> personCacheKeys.writeBackKey(person.getId()),
+                        Collectors.mapping(
+                                person -> new DefaultTypedTuple<>(person.getId().toString(), queuedAt),
+                                Collectors.toSet()
+                        )
+                ));
+        final var personIds = people.stream().map(Person::getId).toList();
+
+        personRedisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                // Both templates share the connection factory, so the connection bound to this session pipelines both.
+                // Set without a time to live, so a person waiting for write back can never expire or be evicted, and
+                // only if absent, so an update made while the person waited in the write buffer is kept
+                for (final var person : people) {
+                    personRedisTemplate.opsForValue().setIfAbsent(personCacheKeys.personKey(person.getId()), person);
+                }
+                personIdsByWriteBackKey.forEach(stringRedisTemplate.opsForZSet()::addIfAbsent);
+                announceCreated(personIds);
+                return null;
+            }
+        });
+    }
+
+    // Persists the people right away and caches them as already written back, for when too many are waiting to be.
+    // They are in the database by then, so failing to cache them only costs a cache miss
+    public void writeThrough(List<Person> people) {
+        personRepository.upsertAll(people);
+
+        try {
+            personRedisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    for (final var person : people) {
+                        personRedisTemplate.opsForValue()
+                                .set(personCacheKeys.personKey(person.getId()), person, cacheProperties.getCleanTtl());
+                    }
+                    announceCreated(people.stream().map(Person::getId).toList());
+                    return null;
+                }
+            });
+        } catch (DataAccessException exception) {
+            LOGGER.debug("People written through could not be cached (amount={})", people.size(), exception);
+        }
+    }
+
+    // Clears lookups made before the people existed and updates the known IDs filter of every node
+    public void announceCreated(List<UUID> personIds) {
+        if (cacheProperties.getNotFoundTtl().isPositive()) {
+            // One DEL per key, since a pipelined DEL of keys on different Redis Cluster slots cannot be split
+            personIds.forEach(personId -> stringRedisTemplate.delete(personCacheKeys.notFoundKey(personId)));
+        }
+        if (cacheProperties.isKnownIdsFilterEnabled()) {
+            stringRedisTemplate.convertAndSend(cacheProperties.getKnownIdsChannel(), PersonKnownIdsBloomFilter.message(personIds));
+        }
+    }
+}
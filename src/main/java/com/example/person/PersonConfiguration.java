@@ -1,23 +1,193 @@
 package com.example.person;
 
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
 
 @Configuration
 public class PersonConfiguration {
 
     @Bean
-    RedisTemplate<String, Person> personRedisTemplate(LettuceConnectionFactory lettuceConnectionFactory) {
+    RedisTemplate<String, Person> personRedisTemplate(LettuceConnectionFactory lettuceConnectionFactory,
+                                                      RedisSerializer<Person> personRedisSerializer) {
         final var template = new RedisTemplate<String, Person>();
 
         template.setConnectionFactory(lettuceConnectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new Jackson2JsonRedisSerializer<>(Person.class));
+        template.setValueSerializer(personRedisSerializer);
 
         return template;
     }
+
+    @Bean
+    ReactiveRedisTemplate<String, Person> personReactiveRedisTemplate(LettuceConnectionFactory lettuceConnectionFactory,
+                                                                      RedisSerializer<Person> personRedisSerializer) {
+        final var serializationContext = RedisSerializationContext.<String, Person>newSerializationContext()
+                .key(RedisSerializer.string())
+                .value(personRedisSerializer)
+                .hashKey(RedisSerializer.string())
+                .hashValue(personRedisSerializer)
+                .build();
+
+        return new ReactiveRedisTemplate<>(lettuceConnectionFactory, serializationContext);
+    }
+
+    @Bean
+    RedisSerializer<Person> personRedisSerializer(PersonServiceCacheProperties cacheProperties) {
+        final var jsonSerializer = new Jackson2JsonRedisSerializer<>(Person.class);
+
+        return switch (cacheProperties.getSerializer()) {
+            case JSON -> jsonSerializer;
+            case BINARY -> new PersonBinaryRedisSerializer(jsonSerializer);
+        };
+    }
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise be preferred over Netty
+    @Bean
+    @Profile("reactive")
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    PersonNearCache personNearCache(PersonServiceCacheProperties cacheProperties,
+                                    StringRedisTemplate stringRedisTemplate,
+                                    MeterRegistry meterRegistry) {
+        if (!cacheProperties.isNearCacheEnabled()) {
+            return new PersonNearCacheDisabled();
+        }
+
+        return new PersonNearCacheDefault(cacheProperties, stringRedisTemplate, meterRegistry);
+    }
+
+    @Bean
+    PersonJournal personJournal(PersonServiceCacheProperties cacheProperties, MeterRegistry meterRegistry) throws IOException {
+        if (!cacheProperties.isJournalEnabled()) {
+            return new PersonJournalDisabled();
+        }
+
+        return new PersonJournalFile(cacheProperties, meterRegistry);
+    }
+
+    // Lettuce queues commands while reconnecting by default, which would hold creates until they time out instead of
+    // journaling them right away. Replacing the client options drops the ones Spring Boot built, so they are built the
+    // same way here, keeping the topology refresh a cluster connection needs
+    @Bean
+    LettuceClientConfigurationBuilderCustomizer personLettuceClientConfigurationBuilderCustomizer(
+            PersonServiceCacheProperties cacheProperties,
+            RedisProperties redisProperties,
+            RedisConnectionDetails redisConnectionDetails) {
+        return builder -> {
+            if (cacheProperties.isJournalEnabled()) {
+                final var clientOptions = redisConnectionDetails.getCluster() != null
+                        ? ClusterClientOptions.builder().topologyRefreshOptions(topologyRefreshOptions(redisProperties))
+                        : ClientOptions.builder();
+                if (redisProperties.getConnectTimeout() != null) {
+                    clientOptions.socketOptions(SocketOptions.builder()
+                            .connectTimeout(redisProperties.getConnectTimeout())
+                            .build());
+                }
+                builder.clientOptions(clientOptions
+                        .timeoutOptions(TimeoutOptions.enabled())
+                        .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                        .build());
+            }
+        };
+    }
+
+    @Bean
+    PersonWriteBuffer personWriteBuffer(PersonServiceCacheProperties cacheProperties,
+                                        PersonCacheWriter personCacheWriter,
+                                        MeterRegistry meterRegistry) {
+        if (!cacheProperties.isWriteBufferEnabled()) {
+            return new PersonWriteBufferDisabled(personCacheWriter);
+        }
+
+        return new PersonWriteBufferDefault(cacheProperties, personCacheWriter, meterRegistry);
+    }
+
+    @Bean
+    PersonBackpressure personBackpressure(PersonServiceCacheProperties cacheProperties,
+                                          PersonCacheKeys personCacheKeys,
+                                          PersonWriteBackPartitions personWriteBackPartitions,
+                                          StringRedisTemplate stringRedisTemplate,
+                                          MeterRegistry meterRegistry) {
+        if (cacheProperties.getBackpressurePolicy() == PersonServiceCacheProperties.BackpressurePolicy.NONE) {
+            return new PersonBackpressureDisabled();
+        }
+
+        return new PersonBackpressureDefault(cacheProperties, personCacheKeys, personWriteBackPartitions,
+                stringRedisTemplate, meterRegistry);
+    }
+
+    @Bean
+    PersonKnownIds personKnownIds(PersonServiceCacheProperties cacheProperties,
+                                  PersonCacheKeys personCacheKeys,
+                                  PersonWriteBackPartitions personWriteBackPartitions,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  JdbcTemplate jdbcTemplate,
+                                  ClientResources clientResources) {
+        if (!cacheProperties.isKnownIdsFilterEnabled()) {
+            return new PersonKnownIdsDisabled();
+        }
+
+        return new PersonKnownIdsBloomFilter(cacheProperties, personCacheKeys, personWriteBackPartitions,
+                stringRedisTemplate, jdbcTemplate, clientResources);
+    }
+
+    @Bean
+    RedisMessageListenerContainer personRedisMessageListenerContainer(LettuceConnectionFactory lettuceConnectionFactory,
+                                                                      PersonServiceCacheProperties cacheProperties,
+                                                                      PersonNearCache personNearCache,
+                                                                      PersonKnownIds personKnownIds) {
+        final var container = new RedisMessageListenerContainer();
+
+        container.setConnectionFactory(lettuceConnectionFactory);
+        if (personNearCache instanceof MessageListener messageListener) {
+            container.addMessageListener(messageListener, new ChannelTopic(cacheProperties.getNearCacheInvalidationChannel()));
+        }
+        if (personKnownIds instanceof MessageListener messageListener) {
+            container.addMessageListener(messageListener, new ChannelTopic(cacheProperties.getKnownIdsChannel()));
+        }
+
+        return container;
+    }
+
+    private static ClusterTopologyRefreshOptions topologyRefreshOptions(RedisProperties redisProperties) {
+        final var refresh = redisProperties.getLettuce().getCluster().getRefresh();
+        final var topologyRefreshOptions = ClusterTopologyRefreshOptions.builder()
+                .dynamicRefreshSources(refresh.isDynamicRefreshSources());
+        if (refresh.getPeriod() != null) {
+            topologyRefreshOptions.enablePeriodicRefresh(refresh.getPeriod());
+        }
+        if (refresh.isAdaptive()) {
+            topologyRefreshOptions.enableAllAdaptiveRefreshTriggers();
+        }
+        return topologyRefreshOptions.build();
+    }
 }
@@ -0,0 +1,11 @@
+package com.example.person;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface PersonJournal {
+
+    void append(List<Person> people);
+
+    long replay(Consumer<List<Person>> replayer);
+}
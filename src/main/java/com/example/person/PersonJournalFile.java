@@ -0,0 +1,316 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of people that could not be cached, split in segment files named after an increasing sequence.
+ * Each record is the payload length (4 bytes), its CRC32C (4 bytes) and the person in the binary format. Concurrent
+ * appends are written together and synced to disk with a single fsync before any of them is acknowledged. Replaying
+ * first seals the segment being written, so new appends never wait for a replay, and streams sealed segments in order,
+ * deleting each one only after all of its people were replayed.
+ */
+public class PersonJournalFile implements PersonJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonJournalFile.class);
+
+    private static final String SEGMENT_PREFIX = "person-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+
+    // Wakes the syncer up on shutdown, since interrupting it would close the segment channel in the middle of a write
+    private static final PendingAppend WAKE_UP = new PendingAppend(List.of(), CompletableFuture.completedFuture(null));
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final RedisSerializer<Person> personSerializer =
+            new PersonBinaryRedisSerializer(new Jackson2JsonRedisSerializer<>(Person.class));
+
+    private final Path directory;
+    private final ReentrantLock segmentLock = new ReentrantLock();
+    private FileChannel segment;
+    private long nextSequence;
+    private volatile boolean replayNeeded;
+
+    private final BlockingQueue<PendingAppend> pendingAppends = new LinkedBlockingQueue<>();
+    private Thread syncer;
+    private volatile boolean running;
+
+    private final DistributionSummary groupCommitSizeSummary;
+
+    public PersonJournalFile(PersonServiceCacheProperties cacheProperties, MeterRegistry meterRegistry) throws IOException {
+        this.cacheProperties = cacheProperties;
+        this.directory = cacheProperties.getJournalDirectory();
+        Files.createDirectories(directory);
+
+        final var segments = segments();
+        this.nextSequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1)) + 1;
+        this.replayNeeded = !segments.isEmpty();
+        if (replayNeeded) {
+            LOGGER.info("Person journal has {} segments left to replay (directory={})", segments.size(), directory);
+        }
+
+        this.groupCommitSizeSummary = DistributionSummary.builder("person.journal.group_commit_size")
+                .description("Appends synced to disk together by a single fsync")
+                .register(meterRegistry);
+    }
+
+    // Started once constructed, since the syncer holds on to this journal
+    @PostConstruct
+    public void start() {
+        running = true;
+        syncer = Thread.ofPlatform()
+                .name("person-journal")
+                .daemon()
+                .start(this::syncContinuously);
+    }
+
+    @Override
+    public void append(List<Person> people) {
+        if (!running) {
+            throw new IllegalStateException("Journal is not running");
+        }
+
+        final var records = new ArrayList<ByteBuffer>(people.size());
+        for (final var person : people) {
+            final var payload = personSerializer.serialize(person);
+            assert payload != null;
+
+            final var checksum = new CRC32C();
+            checksum.update(payload);
+            records.add(ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                    .putInt(payload.length)
+                    .putInt((int) checksum.getValue())
+                    .put(payload)
+                    .flip());
+        }
+
+        final var pendingAppend = new PendingAppend(records, new CompletableFuture<>());
+        pendingAppends.add(pendingAppend);
+
+        // The syncer may have drained the queue and stopped meanwhile, unless it took this append already
+        if (!running && pendingAppends.remove(pendingAppend)) {
+            throw new IllegalStateException("Journal is not running");
+        }
+
+        try {
+            pendingAppend.synced().join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException("Could not append people to the journal", cause);
+            }
+            throw new IllegalStateException("Could not append people to the journal", exception.getCause());
+        }
+    }
+
+    @Override
+    public long replay(Consumer<List<Person>> replayer) {
+        if (!replayNeeded) {
+            return 0;
+        }
+
+        final List<Path> sealedSegments;
+        segmentLock.lock();
+        try {
+            closeSegment();
+            sealedSegments = segments();
+            replayNeeded = false;
+        } catch (IOException exception) {
+            replayNeeded = true;
+            throw new UncheckedIOException(exception);
+        } finally {
+            segmentLock.unlock();
+        }
+
+        var amountOfPeople = 0L;
+        try {
+            for (final var sealedSegment : sealedSegments) {
+                amountOfPeople += replay(sealedSegment, replayer);
+                Files.delete(sealedSegment);
+            }
+        } catch (IOException exception) {
+            replayNeeded = true;
+            throw new UncheckedIOException(exception);
+        } catch (RuntimeException exception) {
+            // Whatever was not deleted is replayed again, which is harmless since people are cached and upserted by ID
+            replayNeeded = true;
+            throw exception;
+        }
+
+        return amountOfPeople;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException, IOException {
+        running = false;
+        if (syncer != null) {
+            pendingAppends.offer(WAKE_UP);
+            syncer.join();
+        }
+
+        segmentLock.lock();
+        try {
+            closeSegment();
+        } finally {
+            segmentLock.unlock();
+        }
+    }
+
+    // Streams the segment in batches instead of loading it, so replaying a large journal needs little memory
+    private long replay(Path sealedSegment, Consumer<List<Person>> replayer) throws IOException {
+        final var batchSize = cacheProperties.getJournalReplayBatchSize();
+        final var batch = new ArrayList<Person>(batchSize);
+        var amountOfPeople = 0L;
+
+        try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sealedSegment)))) {
+            while (true) {
+                final Person person;
+                try {
+                    final var payloadLength = input.readInt();
+                    final var expectedChecksum = input.readInt();
+                    final var payload = input.readNBytes(Math.max(0, Math.min(payloadLength, MAX_PAYLOAD_SIZE)));
+                    final var checksum = new CRC32C();
+                    checksum.update(payload);
+                    if (payload.length != payloadLength || (int) checksum.getValue() != expectedChecksum) {
+                        LOGGER.warn("Person journal segment ends with a torn record (segment={}, replayed={})",
+                                sealedSegment, amountOfPeople + batch.size());
+                        break;
+                    }
+                    person = personSerializer.deserialize(payload);
+                } catch (EOFException exception) {
+                    break;
+                }
+
+                batch.add(person);
+                if (batch.size() == batchSize) {
+                    replayer.accept(List.copyOf(batch));
+                    amountOfPeople += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            replayer.accept(List.copyOf(batch));
+            amountOfPeople += batch.size();
+        }
+
+        return amountOfPeople;
+    }
+
+    private void syncContinuously() {
+        final var batch = new ArrayList<PendingAppend>();
+
+        while (running || !pendingAppends.isEmpty()) {
+            try {
+                final var first = running ? pendingAppends.poll(1, TimeUnit.SECONDS) : pendingAppends.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException exception) {
+                // Nothing interrupts the syncer on purpose, so it is taken as a shutdown and the queue is drained
+                running = false;
+                continue;
+            }
+            pendingAppends.drainTo(batch);
+            batch.removeIf(pendingAppend -> pendingAppend == WAKE_UP);
+
+            if (!batch.isEmpty()) {
+                sync(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void sync(List<PendingAppend> batch) {
+        segmentLock.lock();
+        try {
+            if (segment == null) {
+                segment = FileChannel.open(
+                        directory.resolve(SEGMENT_PREFIX + "%020d".formatted(nextSequence++) + SEGMENT_SUFFIX),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE
+                );
+            }
+            for (final var pendingAppend : batch) {
+                for (final var record : pendingAppend.records()) {
+                    while (record.hasRemaining()) {
+                        segment.write(record);
+                    }
+                }
+            }
+            segment.force(false);
+            replayNeeded = true;
+        } catch (IOException exception) {
+            LOGGER.error("Could not sync {} appends to the person journal", batch.size(), exception);
+            batch.forEach(pendingAppend -> pendingAppend.synced().completeExceptionally(exception));
+
+            // The segment may end with part of this batch now, so later appends go to a new one
+            try {
+                closeSegment();
+            } catch (IOException closeException) {
+                segment = null;
+            }
+            return;
+        } finally {
+            segmentLock.unlock();
+        }
+
+        groupCommitSizeSummary.record(batch.size());
+        batch.forEach(pendingAppend -> pendingAppend.synced().complete(null));
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (final var files = Files.list(directory)) {
+            return files
+                    .filter(file -> {
+                        final var fileName = file.getFileName().toString();
+                        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        final var fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private record PendingAppend(List<ByteBuffer> records, CompletableFuture<Void> synced) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Replays the journal right after startup and then periodically, until Redis, or the database, takes the people again
+@Component
+public class PersonJournalReplayer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonJournalReplayer.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonJournal personJournal;
+    private final PersonCacheWriter personCacheWriter;
+    private final PersonRepository personRepository;
+    private final PersonWriteBackScheduler personWriteBackScheduler;
+
+    // Not the shared task scheduler, so a long replay does not hold up write back runs, nor a slow run the replay
+    private final ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+            .name("person-journal-replay")
+            .daemon()
+            .factory());
+
+    private final Counter replayedCounter;
+
+    public PersonJournalReplayer(PersonServiceCacheProperties cacheProperties,
+                                 PersonJournal personJournal,
+                                 PersonCacheWriter personCacheWriter,
+                                 PersonRepository personRepository,
+                                 PersonWriteBackScheduler personWriteBackScheduler,
+                                 MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personJournal = personJournal;
+        this.personCacheWriter = personCacheWriter;
+        this.personRepository = personRepository;
+        this.personWriteBackScheduler = personWriteBackScheduler;
+        this.replayedCounter = Counter.builder("person.journal.replayed")
+                .description("People replayed from the journal")
+                .tag("target", cacheProperties.getJournalReplayTarget().name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (cacheProperties.isJournalEnabled()) {
+            final var replayInterval = cacheProperties.getJournalReplayInterval().toNanos();
+            replayer.scheduleWithFixedDelay(this::replay, 0, replayInterval, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        replayer.shutdown();
+    }
+
+    private void replay() {
+        try {
+            final var amountOfPeople = personJournal.replay(this::replay);
+            if (amountOfPeople > 0) {
+                LOGGER.info("Replayed {} people from the journal (target={})", amountOfPeople,
+                        cacheProperties.getJournalReplayTarget());
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.debug("Could not replay the journal yet", exception);
+        }
+    }
+
+    private void replay(List<Person> people) {
+        switch (cacheProperties.getJournalReplayTarget()) {
+            case REDIS -> {
+                personCacheWriter.writeToRedis(people);
+                personWriteBackScheduler.queued(people.size());
+            }
+            case DATABASE -> {
+                personRepository.upsertAll(people);
+                announceCreated(people);
+            }
+        }
+        replayedCounter.increment(people.size());
+    }
+
+    // Redis may still be down when replaying to the database. A filter missing the announcement confirms its negative
+    // answers, and loads the people from the database again once reconnected
+    private void announceCreated(List<Person> people) {
+        try {
+            personCacheWriter.announceCreated(people.stream().map(Person::getId).toList());
+        } catch (DataAccessException exception) {
+            LOGGER.debug("People replayed to the database could not be announced (amount={})", people.size(), exception);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.person;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public interface PersonKnownIds {
+
+    boolean mightExist(UUID personId);
+
+    // Whether a negative answer may still be checked against Redis and the database, which is limited so lookups of
+    // unknown IDs only reach them so often
+    boolean tryConfirm();
+
+    void add(Collection<UUID> personIds);
+}
@@ -0,0 +1,260 @@
+package com.example.person;
+
+import io.lettuce.core.event.Event;
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.lettuce.core.resource.ClientResources;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+// Answers whether a person might exist without any network I/O. A positive answer is wrong for about the configured
+// false positive rate of unknown IDs. A negative one misses a person whose announcement was lost, since Pub/Sub delivers
+// at most once, so it is only trusted once the allowed confirmations against Redis and the database are used up
+public class PersonKnownIdsBloomFilter implements PersonKnownIds, MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonKnownIdsBloomFilter.class);
+
+    private static final String MESSAGE_SEPARATOR = " ";
+
+    private static final String FIRST_PAGE_SQL = """
+            SELECT PERSON_ID
+            FROM PERSON
+            WHERE PERSON_DELETED = FALSE
+            ORDER BY PERSON_ID
+            LIMIT ?
+            """;
+
+    // Read a page at a time from the primary key index, so loading a large table never holds all of its IDs at once
+    private static final String NEXT_PAGE_SQL = """
+            SELECT PERSON_ID
+            FROM PERSON
+            WHERE PERSON_DELETED = FALSE
+              AND PERSON_ID > ?
+            ORDER BY PERSON_ID
+            LIMIT ?
+            """;
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final PersonWriteBackPartitions personWriteBackPartitions;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClientResources clientResources;
+
+    private final AtomicLongArray bits;
+    private final long amountOfBits;
+    private final int amountOfHashes;
+    private volatile boolean loaded;
+    private volatile boolean stale;
+    private Disposable connectionEvents;
+
+    // Theoretical time of the next confirmation, as in the generic cell rate algorithm
+    private final AtomicLong nextConfirmationAt = new AtomicLong(System.nanoTime());
+
+    public PersonKnownIdsBloomFilter(PersonServiceCacheProperties cacheProperties,
+                                     PersonCacheKeys personCacheKeys,
+                                     PersonWriteBackPartitions personWriteBackPartitions,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     JdbcTemplate jdbcTemplate,
+                                     ClientResources clientResources) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.personWriteBackPartitions = personWriteBackPartitions;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clientResources = clientResources;
+
+        final var expectedInsertions = Math.max(1, cacheProperties.getKnownIdsFilterExpectedInsertions());
+        final var falsePositiveRate = cacheProperties.getKnownIdsFilterFalsePositiveRate();
+        final var optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray(Math.toIntExact(Math.ceilDiv(Math.max(Long.SIZE, optimalBits), Long.SIZE)));
+        this.amountOfBits = (long) bits.length() * Long.SIZE;
+        this.amountOfHashes = Math.max(1, (int) Math.round((double) amountOfBits / expectedInsertions * Math.log(2)));
+    }
+
+    @Override
+    public boolean mightExist(UUID personId) {
+        if (!loaded) {
+            return true;
+        }
+
+        final var hash1 = mix(personId.getMostSignificantBits());
+        final var hash2 = mix(personId.getLeastSignificantBits()) | 1;
+        for (var index = 0; index < amountOfHashes; index++) {
+            final var bit = Math.floorMod(hash1 + index * hash2, amountOfBits);
+            if ((bits.get((int) (bit / Long.SIZE)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Spaces confirmations evenly, allowing a second worth of them at once, with a compare-and-set instead of a lock,
+    // since it is called on every lookup of an unknown ID and a monitor would pin virtual threads
+    @Override
+    public boolean tryConfirm() {
+        final var confirmationsPerSecond = cacheProperties.getKnownIdsFilterConfirmationsPerSecond();
+        if (confirmationsPerSecond <= 0) {
+            return false;
+        }
+
+        final var interval = TimeUnit.SECONDS.toNanos(1) / confirmationsPerSecond;
+        final var tolerance = TimeUnit.SECONDS.toNanos(1) - interval;
+        while (true) {
+            final var now = System.nanoTime();
+            final var next = nextConfirmationAt.get();
+            if (next - now > tolerance) {
+                return false;
+            }
+            if (nextConfirmationAt.compareAndSet(next, (next - now > 0 ? next : now) + interval)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void add(Collection<UUID> personIds) {
+        personIds.forEach(this::add);
+    }
+
+    // Loading reads Redis and the database, so connection events are handled off the Lettuce event loop
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        connectionEvents = clientResources.eventBus().get()
+                .filter(event -> event instanceof ConnectionDeactivatedEvent || event instanceof ConnectionActivatedEvent)
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(this::onConnectionEvent);
+        load();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stop() {
+        if (connectionEvents != null) {
+            connectionEvents.dispose();
+        }
+    }
+
+    // Messages published while a connection is down are lost, so the filter answers positively from then on, until
+    // it is loaded again once reconnected
+    void onConnectionEvent(Event event) {
+        if (event instanceof ConnectionDeactivatedEvent) {
+            stale = true;
+            if (loaded) {
+                loaded = false;
+                LOGGER.warn("Known person IDs filter disabled until Redis reconnects");
+            }
+            return;
+        }
+        if (!stale) {
+            return;
+        }
+
+        stale = false;
+        try {
+            load();
+        } catch (RuntimeException exception) {
+            stale = true;
+            LOGGER.warn("Known person IDs could not be loaded again, retrying on the next reconnection", exception);
+        }
+    }
+
+    // The channel is already subscribed, so people created from now on reach the filter through it. Reading the
+    // queues before the table keeps a person written back meanwhile from being missed by both
+    void load() {
+        var amountOfPeople = 0L;
+        final var amountOfPartitions = personWriteBackPartitions.register();
+        for (var partition = 0; partition < amountOfPartitions; partition++) {
+            amountOfPeople += addQueued(personCacheKeys.writeBackKey(partition));
+
+            final var inFlightKeys = stringRedisTemplate.boundZSetOps(personCacheKeys.claimsKey(partition)).range(0, -1);
+            if (inFlightKeys != null) {
+                for (final var inFlightKey : inFlightKeys) {
+                    amountOfPeople += addQueued(inFlightKey);
+                }
+            }
+        }
+
+        final var pageSize = cacheProperties.getKnownIdsFilterLoadPageSize();
+        UUID lastPersonId = null;
+        while (true) {
+            final var lastPersonIdOnPage = new UUID[1];
+            final var amountOfPeopleOnPage = new int[1];
+            jdbcTemplate.query(lastPersonId == null ? FIRST_PAGE_SQL : NEXT_PAGE_SQL, resultSet -> {
+                lastPersonIdOnPage[0] = resultSet.getObject(1, UUID.class);
+                add(lastPersonIdOnPage[0]);
+                amountOfPeopleOnPage[0]++;
+            }, lastPersonId == null ? new Object[]{pageSize} : new Object[]{lastPersonId, pageSize});
+
+            if (amountOfPeopleOnPage[0] < pageSize) {
+                break;
+            }
+            lastPersonId = lastPersonIdOnPage[0];
+        }
+        loaded = true;
+        LOGGER.info("Known person IDs loaded (queued={}, bits={}, hashes={})", amountOfPeople, amountOfBits, amountOfHashes);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        final var body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (final var personId : body.split(MESSAGE_SEPARATOR)) {
+            add(UUID.fromString(personId));
+        }
+    }
+
+    // Sent by the node creating people, so every other node adds them too
+    static String message(Collection<UUID> personIds) {
+        return personIds.stream()
+                .map(UUID::toString)
+                .collect(Collectors.joining(MESSAGE_SEPARATOR));
+    }
+
+    private long addQueued(String queueKey) {
+        final Set<String> personIds = stringRedisTemplate.boundZSetOps(queueKey).range(0, -1);
+        if (personIds == null) {
+            return 0;
+        }
+
+        personIds.forEach(personId -> add(UUID.fromString(personId)));
+        return personIds.size();
+    }
+
+    private void add(UUID personId) {
+        final var hash1 = mix(personId.getMostSignificantBits());
+        final var hash2 = mix(personId.getLeastSignificantBits()) | 1;
+        for (var index = 0; index < amountOfHashes; index++) {
+            final var bit = Math.floorMod(hash1 + index * hash2, amountOfBits);
+            final var mask = 1L << bit;
+            bits.getAndUpdate((int) (bit / Long.SIZE), word -> word | mask);
+        }
+    }
+
+    // Clients choose the IDs they look up, so they are mixed instead of trusting them to be random
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.person;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public class PersonKnownIdsDisabled implements PersonKnownIds {
+
+    @Override
+    public boolean mightExist(UUID personId) {
+        return true;
+    }
+
+    @Override
+    public boolean tryConfirm() {
+        return true;
+    }
+
+    @Override
+    public void add(Collection<UUID> personIds) {
+    }
+}
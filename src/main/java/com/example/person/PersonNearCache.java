@@ -0,0 +1,17 @@
+package com.example.person;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PersonNearCache {
+
+    Optional<Person> get(UUID personId);
+
+    void put(Person person);
+
+    boolean isMissing(UUID personId);
+
+    void putMissing(UUID personId);
+
+    void invalidate(UUID personId);
+}
@@ -0,0 +1,109 @@
+package com.example.person;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+public class PersonNearCacheDefault implements PersonNearCache, MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonNearCacheDefault.class);
+
+    private static final String MESSAGE_SEPARATOR = " ";
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Cache<UUID, Person> cache;
+    private final Cache<UUID, Boolean> missingCache;
+
+    public PersonNearCacheDefault(PersonServiceCacheProperties cacheProperties,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getNearCacheMaximumSize())
+                .expireAfterWrite(cacheProperties.getNearCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "person.near_cache");
+
+        // Unknown IDs are never remembered longer than on Redis, where creating the person clears them
+        final var notFoundTtl = cacheProperties.getNotFoundTtl();
+        final var nearCacheTtl = cacheProperties.getNearCacheTtl();
+        this.missingCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getNearCacheMaximumSize())
+                .expireAfterWrite(notFoundTtl.compareTo(nearCacheTtl) < 0 ? notFoundTtl : nearCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, missingCache, "person.near_cache.not_found");
+    }
+
+    @Override
+    public Optional<Person> get(UUID personId) {
+        return Optional.ofNullable(cache.getIfPresent(personId)).filter(person -> !person.isDeleted());
+    }
+
+    // A lookup that read the person before it was changed may put it back after the change did, so an older version
+    // never replaces a newer one. Tombstones are kept the same way, so a deleted person is not brought back either
+    @Override
+    public void put(Person person) {
+        cache.asMap().merge(person.getId(), person, (personCached, personPut) ->
+                personPut.getVersion() >= personCached.getVersion() ? personPut : personCached);
+        missingCache.invalidate(person.getId());
+    }
+
+    @Override
+    public boolean isMissing(UUID personId) {
+        if (missingCache.getIfPresent(personId) != null) {
+            return true;
+        }
+
+        final var person = cache.getIfPresent(personId);
+        return person != null && person.isDeleted();
+    }
+
+    @Override
+    public void putMissing(UUID personId) {
+        missingCache.put(personId, Boolean.TRUE);
+    }
+
+    @Override
+    public void invalidate(UUID personId) {
+        cache.invalidate(personId);
+        missingCache.invalidate(personId);
+
+        // Tagged with the node ID so this node ignores its own message
+        final var message = cacheProperties.getNodeId() + MESSAGE_SEPARATOR + personId;
+        stringRedisTemplate.convertAndSend(cacheProperties.getNearCacheInvalidationChannel(), message);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        final var body = new String(message.getBody(), StandardCharsets.UTF_8);
+        final var separatorIndex = body.indexOf(MESSAGE_SEPARATOR);
+        if (separatorIndex < 0) {
+            LOGGER.warn("Ignoring malformed near cache invalidation message (message={})", body);
+            return;
+        }
+
+        final var nodeId = body.substring(0, separatorIndex);
+        if (nodeId.equals(cacheProperties.getNodeId())) {
+            return;
+        }
+
+        final var personId = UUID.fromString(body.substring(separatorIndex + 1));
+        cache.invalidate(personId);
+        missingCache.invalidate(personId);
+        LOGGER.debug("Person invalidated on near cache (personId={}, nodeId={})", personId, nodeId);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.person;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public class PersonNearCacheDisabled implements PersonNearCache {
+
+    @Override
+    public Optional<Person> get(UUID personId) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(Person person) {
+    }
+
+    @Override
+    public boolean isMissing(UUID personId) {
+        return false;
+    }
+
+    @Override
+    public void putMissing(UUID personId) {
+    }
+
+    @Override
+    public void invalidate(UUID personId) {
+    }
+}
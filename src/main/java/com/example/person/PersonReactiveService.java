@@ -0,0 +1,25 @@
+package com.example.person;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PersonReactiveService {
+
+    Mono<Person> create(String name, Integer age);
+
+    Flux<Person> createAll(List<Person> people);
+
+    // For a batch created in chunks, admitted by the backpressure policy as a whole before the first one
+    Flux<Person> createAll(List<Person> people, PersonBackpressure.Admission admission);
+
+    Mono<Person> findOne(UUID personId);
+
+    Flux<Person> findAll(List<UUID> personIds);
+
+    Mono<Person> update(UUID personId, String name, Integer age);
+
+    Mono<Void> delete(UUID personId);
+}
@@ -0,0 +1,564 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReactiveZSetCommands;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/*
+ * Serves the same API without blocking the event loop, running the cache scripts shared with the blocking service. Two
+ * features of the blocking service are not supported here: creates are cached right away instead of going through the
+ * write buffer, and a person missing on cache is loaded once per node but never under the load lock, so
+ * write-buffer-enabled and load-lock-enabled are ignored.
+ */
+@Service
+@Profile("reactive")
+public class PersonReactiveServiceDefault implements PersonReactiveService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonReactiveServiceDefault.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final PersonRepository personRepository;
+
+    private final ReactiveRedisTemplate<String, Person> personReactiveRedisTemplate;
+    private final ReactiveStringRedisTemplate reactiveStringRedisTemplate;
+    private final PersonCacheScripts personCacheScripts;
+    private final PersonNearCache personNearCache;
+    private final PersonKnownIds personKnownIds;
+    private final PersonJournal personJournal;
+    private final PersonBackpressure personBackpressure;
+    private final PersonWriteBackScheduler personWriteBackScheduler;
+
+    private final ConcurrentHashMap<UUID, CompletableFuture<Person>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private final Counter mutationsCounter;
+    private final Counter fillsCounter;
+    private final Counter nearCacheHitsCounter;
+    private final Counter cacheHitsCounter;
+    private final Counter databaseHitsCounter;
+    private final Counter notFoundCounter;
+    private final Counter notFoundCacheHitsCounter;
+    private final Counter knownIdsFilterHitsCounter;
+    private final Counter coalescedLoadsCounter;
+    private final Counter journaledCounter;
+    private final Timer createTimer;
+    private final Timer createAllTimer;
+    private final Timer findOneTimer;
+    private final Timer findAllTimer;
+    private final Timer updateTimer;
+    private final Timer deleteTimer;
+
+    public PersonReactiveServiceDefault(PersonServiceCacheProperties cacheProperties,
+                                        PersonCacheKeys personCacheKeys,
+                                        PersonRepository personRepository,
+                                        ReactiveRedisTemplate<String, Person> personReactiveRedisTemplate,
+                                        ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                        PersonCacheScripts personCacheScripts,
+                                        PersonNearCache personNearCache,
+                                        PersonKnownIds personKnownIds,
+                                        PersonJournal personJournal,
+                                        PersonBackpressure personBackpressure,
+                                        PersonWriteBackScheduler personWriteBackScheduler,
+                                        MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.personRepository = personRepository;
+        this.personReactiveRedisTemplate = personReactiveRedisTemplate;
+        this.reactiveStringRedisTemplate = reactiveStringRedisTemplate;
+        this.personCacheScripts = personCacheScripts;
+        this.personNearCache = personNearCache;
+        this.personKnownIds = personKnownIds;
+        this.personJournal = personJournal;
+        this.personBackpressure = personBackpressure;
+        this.personWriteBackScheduler = personWriteBackScheduler;
+        this.mutationsCounter = PersonServiceMeters.mutationsCounter(meterRegistry);
+        this.fillsCounter = PersonServiceMeters.fillsCounter(meterRegistry);
+        this.nearCacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "near_cache");
+        this.cacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "cache");
+        this.databaseHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "database");
+        this.notFoundCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "none");
+        this.notFoundCacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "not_found_cache");
+        this.knownIdsFilterHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "known_ids_filter");
+        this.coalescedLoadsCounter = PersonServiceMeters.coalescedLoadsCounter(meterRegistry);
+        this.journaledCounter = PersonServiceMeters.journaledCounter(meterRegistry);
+        this.createTimer = PersonServiceMeters.operationTimer(meterRegistry, "create");
+        this.createAllTimer = PersonServiceMeters.operationTimer(meterRegistry, "create_all");
+        this.findOneTimer = PersonServiceMeters.operationTimer(meterRegistry, "find_one");
+        this.findAllTimer = PersonServiceMeters.operationTimer(meterRegistry, "find_all");
+        this.updateTimer = PersonServiceMeters.operationTimer(meterRegistry, "update");
+        this.deleteTimer = PersonServiceMeters.operationTimer(meterRegistry, "delete");
+    }
+
+    @Override
+    public Mono<Person> create(String name, Integer age) {
+        return timed(createTimer, Mono.defer(() -> {
+            final var person = new Person();
+            person.setId(UUID.randomUUID());
+            person.setVersion(1);
+            person.setName(name);
+            person.setAge(age);
+
+            return personBackpressure.admitReactive(1)
+                    .flatMap(admission -> admission == PersonBackpressure.Admission.WRITE_THROUGH
+                            ? writeThrough(List.of(person))
+                            : personReactiveRedisTemplate.opsForValue().set(personCacheKeys.personKey(person.getId()), person)
+                            .then(Mono.when(
+                                    queue(
+                                            personCacheKeys.writeBackKey(person.getId()),
+                                            List.of(person.getId().toString()),
+                                            System.currentTimeMillis()
+                                    ),
+                                    announceCreated(List.of(person.getId()))
+                            ))
+                            .onErrorResume(DataAccessException.class, exception -> journal(List.of(person), exception))
+                            .doOnSuccess(queued -> {
+                                mutationsCounter.increment();
+                                personWriteBackScheduler.queued(1);
+                            }))
+                    .then(Mono.fromRunnable(() -> {
+                        personKnownIds.add(List.of(person.getId()));
+                        personNearCache.put(person);
+                        LOGGER.debug("Person cached (key={}, value={})", person.getId(), person);
+                    }))
+                    .thenReturn(person);
+        }));
+    }
+
+    @Override
+    public Flux<Person> createAll(List<Person> people) {
+        return personBackpressure.admitReactive(people.size())
+                .flatMapMany(admission -> createAll(people, admission));
+    }
+
+    @Override
+    public Flux<Person> createAll(List<Person> people, PersonBackpressure.Admission admission) {
+        return timed(createAllTimer, Mono.defer(() -> {
+            people.forEach(person -> {
+                person.setId(UUID.randomUUID());
+                person.setVersion(1);
+            });
+
+            final var peopleByKey = people.stream()
+                    .collect(Collectors.toMap(person -> personCacheKeys.personKey(person.getId()), Function.identity()));
+
+            final var queuedAt = System.currentTimeMillis();
+            final Map<String, List<String>> personIdsByWriteBackKey = people.stream()
+                    .collect(Collectors.groupingBy(
+                            person -> personCacheKeys.writeBackKey(person.getId()),
+                            Collectors.mapping(person -> person.getId().toString(), Collectors.toList())
+                    ));
+
+            // Commands sent without waiting for each other are pipelined by Lettuce on the shared connection
+            return (admission == PersonBackpressure.Admission.WRITE_THROUGH
+                    ? writeThrough(people)
+                    : personReactiveRedisTemplate.opsForValue().multiSet(peopleByKey)
+                    .thenMany(Flux.fromIterable(personIdsByWriteBackKey.entrySet())
+                            .flatMap(entry -> queue(entry.getKey(), entry.getValue(), queuedAt)))
+                    .then(announceCreated(people.stream().map(Person::getId).toList()))
+                    .onErrorResume(DataAccessException.class, exception -> journal(people, exception))
+                    .then(Mono.fromRunnable(() -> {
+                        mutationsCounter.increment(people.size());
+                        personWriteBackScheduler.queued(people.size());
+                    })))
+                    .then(Mono.fromRunnable(() -> {
+                        personKnownIds.add(people.stream().map(Person::getId).toList());
+                        people.forEach(personNearCache::put);
+                        LOGGER.debug("People cached (amount={})", people.size());
+                    }))
+                    .thenReturn(people);
+        })).flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public Mono<Person> findOne(UUID personId) {
+        return timed(findOneTimer, Mono.defer(() -> {
+            final var personOnNearCache = personNearCache.get(personId);
+            if (personOnNearCache.isPresent()) {
+                nearCacheHitsCounter.increment();
+                return Mono.just(personOnNearCache.get());
+            }
+
+            // A negative answer of the known IDs filter stands in for the not found cache, but is still confirmed
+            // while confirmations are left, since the announcement of a person created on another node may be lost
+            final var mightExist = personKnownIds.mightExist(personId);
+            if (!mightExist && !personKnownIds.tryConfirm()) {
+                knownIdsFilterHitsCounter.increment();
+                LOGGER.debug("Person not found by known IDs filter (personId={})", personId);
+                return Mono.error(new PersonNotFoundException(personId));
+            }
+            if (mightExist && personNearCache.isMissing(personId)) {
+                notFoundCacheHitsCounter.increment();
+                return Mono.error(new PersonNotFoundException(personId));
+            }
+
+            return personCacheScripts.getReactive(personCacheKeys.personKey(personId))
+                    .flatMap(personOnCache -> {
+                        if (personOnCache.isDeleted()) {
+                            notFoundCacheHitsCounter.increment();
+                            LOGGER.debug("Person deleted on cache (personId={})", personId);
+                            personNearCache.put(personOnCache);
+                            return Mono.error(new PersonNotFoundException(personId));
+                        }
+                        cacheHitsCounter.increment();
+                        LOGGER.debug("Person retrieved from cache (personId={})", personId);
+                        personNearCache.put(personOnCache);
+                        return Mono.just(personOnCache);
+                    })
+                    .switchIfEmpty(Mono.defer(() -> missingOnCache(mightExist ? List.of(personId) : List.of())
+                            .flatMap(personIdsMissing -> {
+                                if (personIdsMissing.isEmpty()) {
+                                    return findOneOnDatabaseOnce(personId);
+                                }
+                                LOGGER.debug("Person not found by not found cache (personId={})", personId);
+                                return Mono.error(new PersonNotFoundException(personId));
+                            })));
+        }));
+    }
+
+    @Override
+    public Flux<Person> findAll(List<UUID> personIds) {
+        return timed(findAllTimer, Mono.defer(() -> {
+            final var peopleById = new HashMap<UUID, Person>();
+
+            final var personIdsNotOnNearCache = new ArrayList<UUID>();
+            final var personIdsUnknown = new HashSet<UUID>();
+            var amountOfPeopleMissing = 0;
+            for (final var personId : new LinkedHashSet<>(personIds)) {
+                if (!personKnownIds.mightExist(personId)) {
+                    if (!personKnownIds.tryConfirm()) {
+                        knownIdsFilterHitsCounter.increment();
+                        continue;
+                    }
+                    personIdsUnknown.add(personId);
+                } else if (personNearCache.isMissing(personId)) {
+                    amountOfPeopleMissing++;
+                    continue;
+                }
+                personNearCache.get(personId).ifPresentOrElse(
+                        person -> peopleById.put(personId, person),
+                        () -> personIdsNotOnNearCache.add(personId)
+                );
+            }
+            nearCacheHitsCounter.increment(peopleById.size());
+            notFoundCacheHitsCounter.increment(amountOfPeopleMissing);
+
+            if (personIdsNotOnNearCache.isEmpty()) {
+                return Mono.just(peopleById);
+            }
+
+            // Scripts sent without waiting for each other are pipelined, keeping the order of the IDs requested
+            return Flux.fromIterable(personIdsNotOnNearCache)
+                    .flatMapSequential(personId -> personCacheScripts.getReactive(personCacheKeys.personKey(personId))
+                            .map(Optional::of)
+                            .defaultIfEmpty(Optional.empty()))
+                    .collectList()
+                    .map(peopleOnCache -> peopleOnCache.stream().map(person -> person.orElse(null)).toList())
+                    .flatMap(peopleOnCache -> {
+                        final var personIdsNotCached = new ArrayList<UUID>();
+                        var amountOfPeopleDeleted = 0;
+                        for (var index = 0; index < peopleOnCache.size(); index++) {
+                            final var person = peopleOnCache.get(index);
+                            if (person == null) {
+                                personIdsNotCached.add(personIdsNotOnNearCache.get(index));
+                                continue;
+                            }
+                            if (person.isDeleted()) {
+                                amountOfPeopleDeleted++;
+                                personNearCache.put(person);
+                                continue;
+                            }
+                            peopleById.put(person.getId(), person);
+                            personNearCache.put(person);
+                        }
+                        cacheHitsCounter.increment(
+                                personIdsNotOnNearCache.size() - personIdsNotCached.size() - amountOfPeopleDeleted);
+                        notFoundCacheHitsCounter.increment(amountOfPeopleDeleted);
+
+                        if (personIdsNotCached.isEmpty()) {
+                            return Mono.just(peopleById);
+                        }
+
+                        return missingOnCache(personIdsNotCached.stream()
+                                .filter(personId -> !personIdsUnknown.contains(personId))
+                                .toList())
+                                .map(personIdsMissing -> personIdsNotCached.stream()
+                                        .filter(personId -> !personIdsMissing.contains(personId))
+                                        .toList())
+                                .flatMap(personIdsToFind -> personIdsToFind.isEmpty()
+                                        ? Mono.just(peopleById)
+                                        : findAllOnDatabase(personIdsToFind)
+                                        .flatMap(peopleNotCached -> fill(peopleNotCached).thenReturn(peopleNotCached))
+                                        .flatMap(peopleNotCached -> {
+                                            peopleNotCached.forEach(person -> peopleById.put(person.getId(), person));
+                                            databaseHitsCounter.increment(peopleNotCached.size());
+                                            notFoundCounter.increment(personIdsToFind.size() - peopleNotCached.size());
+
+                                            return rememberMissing(personIdsToFind.stream()
+                                                    .filter(personId -> !peopleById.containsKey(personId))
+                                                    .toList())
+                                                    .thenReturn(peopleById);
+                                        }));
+                    });
+        })).flatMapIterable(peopleById -> personIds.stream()
+                .map(peopleById::get)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    // Only Redis is written, and several changes to a person before it is written back reach the database as one
+    @Override
+    public Mono<Person> update(UUID personId, String name, Integer age) {
+        return timed(updateTimer, change(personId, person -> person.updated(name, age)));
+    }
+
+    @Override
+    public Mono<Void> delete(UUID personId) {
+        return timed(deleteTimer, change(personId, Person::tombstone)).then();
+    }
+
+    // Changes are applied to the value read only if no other change was cached meanwhile, otherwise read again. They
+    // are admitted like creates, since they queue the person for write back just the same
+    private Mono<Person> change(UUID personId, UnaryOperator<Person> change) {
+        return personBackpressure.admitReactive(1)
+                .flatMap(admission -> change(personId, change, admission));
+    }
+
+    private Mono<Person> change(UUID personId, UnaryOperator<Person> change, PersonBackpressure.Admission admission) {
+        return Mono.defer(() -> personCacheScripts.getForChangeReactive(personId)
+                        .flatMap(personCached -> (personCached.length > 0
+                                ? Mono.justOrEmpty(personCacheScripts.deserialize(personCached))
+                                : Mono.fromCallable(() -> personRepository.findById(personId))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(Mono::justOrEmpty))
+                                .filter(person -> !person.isDeleted())
+                                .switchIfEmpty(Mono.error(new PersonNotFoundException(personId)))
+                                .flatMap(person -> {
+                                    final var personChanged = change.apply(person);
+                                    return (admission == PersonBackpressure.Admission.WRITE_THROUGH
+                                            ? personCacheScripts.changeUnqueuedReactive(personCached, personChanged)
+                                            : personCacheScripts.changeReactive(personCached, personChanged))
+                                            .filter(changed -> changed)
+                                            .map(changed -> personChanged)
+                                            .switchIfEmpty(Mono.fromRunnable(() -> LOGGER.debug(
+                                                    "Person changed concurrently, changing it again (personId={})",
+                                                    personId)));
+                                })))
+                .repeatWhenEmpty(repeats -> repeats)
+                // Invalidating the near cache of other nodes publishes a message and blocks, so never on the event loop
+                .flatMap(personChanged -> Mono.fromRunnable(() -> {
+                            if (admission == PersonBackpressure.Admission.WRITE_THROUGH) {
+                                changeThrough(personChanged);
+                            } else {
+                                mutationsCounter.increment();
+                                personWriteBackScheduler.queued(1);
+                            }
+                            personNearCache.invalidate(personId);
+                            personNearCache.put(personChanged);
+                            LOGGER.debug("Person changed on cache (personId={}, value={})", personId, personChanged);
+                        })
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(personChanged));
+    }
+
+    // Persisted only once cached, so it never overwrites a change cached after it, then expired like a flushed person
+    // unless changed again meanwhile. Called on the bounded elastic scheduler, since JPA and the cache scripts block
+    private void changeThrough(Person personChanged) {
+        try {
+            personRepository.upsertAll(List.of(personChanged));
+        } catch (DataAccessException exception) {
+            personCacheScripts.queue(personChanged.getId());
+            mutationsCounter.increment();
+            personWriteBackScheduler.queued(1);
+            LOGGER.debug("Person changed could not be written through, queued for write back (personId={})",
+                    personChanged.getId(), exception);
+            return;
+        }
+
+        personCacheScripts.expireFlushed(List.of(personChanged));
+    }
+
+    // Only the first subscriber missing a person reads the database, while the others on this node share its result.
+    // The load is subscribed on its own, so it is not cancelled with the subscriber that started it
+    private Mono<Person> findOneOnDatabaseOnce(UUID personId) {
+        return Mono.defer(() -> {
+            final var load = new CompletableFuture<Person>();
+            final var loadInFlight = loadsInFlight.putIfAbsent(personId, load);
+            if (loadInFlight != null) {
+                coalescedLoadsCounter.increment();
+                return Mono.fromFuture(loadInFlight, true);
+            }
+
+            // A load may have finished between missing the cache and getting here
+            personCacheScripts.getReactive(personCacheKeys.personKey(personId))
+                    .doOnNext(personOnCache -> cacheHitsCounter.increment())
+                    .flatMap(personOnCache -> personOnCache.isDeleted()
+                            ? Mono.error(new PersonNotFoundException(personId))
+                            : Mono.just(personOnCache))
+                    .switchIfEmpty(Mono.defer(() -> findOneOnDatabase(personId)))
+                    .doFinally(signalType -> loadsInFlight.remove(personId, load))
+                    .subscribe(load::complete, load::completeExceptionally);
+            return Mono.fromFuture(load, true);
+        });
+    }
+
+    // JPA blocks the calling thread, so it never runs on the event loop
+    private Mono<Person> findOneOnDatabase(UUID personId) {
+        return Mono.fromCallable(() -> personRepository.findById(personId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::justOrEmpty)
+                .flatMap(person -> {
+                    databaseHitsCounter.increment();
+                    LOGGER.debug("Person retrieved from database (personId={})", personId);
+
+                    return fill(List.of(person)).thenReturn(person);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    notFoundCounter.increment();
+                    LOGGER.debug("Person not found (personId={})", personId);
+                    return rememberMissing(List.of(personId))
+                            .then(Mono.error(new PersonNotFoundException(personId)));
+                }));
+    }
+
+    private Mono<List<Person>> findAllOnDatabase(List<UUID> personIds) {
+        return Mono.fromCallable(() -> {
+                    final var people = new ArrayList<Person>();
+                    personRepository.findAllById(personIds).forEach(people::add);
+                    return (List<Person>) people;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private boolean isNotFoundCacheEnabled() {
+        return cacheProperties.getNotFoundTtl().isPositive();
+    }
+
+    // Asked only for people missing on cache, so the extra round trip replaces a database query instead of a hit
+    private Mono<Set<UUID>> missingOnCache(List<UUID> personIds) {
+        if (!isNotFoundCacheEnabled()) {
+            return Mono.just(Set.of());
+        }
+
+        return Flux.fromIterable(personIds)
+                .filterWhen(personId -> reactiveStringRedisTemplate.hasKey(personCacheKeys.notFoundKey(personId)))
+                .doOnNext(personNearCache::putMissing)
+                .collect(Collectors.toSet())
+                .doOnNext(personIdsMissing -> notFoundCacheHitsCounter.increment(personIdsMissing.size()));
+    }
+
+    private Mono<Void> rememberMissing(List<UUID> personIds) {
+        if (!isNotFoundCacheEnabled()) {
+            return Mono.empty();
+        }
+
+        return Flux.fromIterable(personIds)
+                .flatMap(personId -> reactiveStringRedisTemplate.opsForValue()
+                        .set(personCacheKeys.notFoundKey(personId), "", cacheProperties.getNotFoundTtl()))
+                .then(Mono.fromRunnable(() -> personIds.forEach(personNearCache::putMissing)));
+    }
+
+    // Clears lookups made before the people existed and updates the known IDs filter of every node
+    private Mono<Void> announceCreated(List<UUID> personIds) {
+        final var notFoundKeys = personIds.stream().map(personCacheKeys::notFoundKey).toList();
+
+        return Mono.when(
+                isNotFoundCacheEnabled() ? reactiveStringRedisTemplate.delete(Flux.fromIterable(notFoundKeys)) : Mono.empty(),
+                cacheProperties.isKnownIdsFilterEnabled()
+                        ? reactiveStringRedisTemplate.convertAndSend(cacheProperties.getKnownIdsChannel(),
+                        PersonKnownIdsBloomFilter.message(personIds))
+                        : Mono.empty()
+        );
+    }
+
+    // Keeps creating people through a Redis outage. Appending waits for the fsync, so it never runs on the event loop
+    private Mono<Void> journal(List<Person> people, DataAccessException exception) {
+        if (!cacheProperties.isJournalEnabled()) {
+            return Mono.error(exception);
+        }
+
+        return Mono.fromRunnable(() -> {
+                    personJournal.append(people);
+                    journaledCounter.increment(people.size());
+                    LOGGER.debug("People journaled while Redis is unavailable (amount={})", people.size(), exception);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    // Used instead of queueing once too many people are waiting for write back. The people are in the database by the
+    // time they are cached, so failing to cache them only costs a cache miss
+    private Mono<Void> writeThrough(List<Person> people) {
+        return Mono.fromRunnable(() -> personRepository.upsertAll(people))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Flux.fromIterable(people)
+                        .flatMap(person -> personReactiveRedisTemplate.opsForValue()
+                                .set(personCacheKeys.personKey(person.getId()), person, cacheProperties.getCleanTtl()))
+                        .then(announceCreated(people.stream().map(Person::getId).toList()))
+                        .onErrorResume(DataAccessException.class, exception -> {
+                            LOGGER.debug("People written through could not be cached (amount={})", people.size(), exception);
+                            return Mono.empty();
+                        }));
+    }
+
+    private Mono<Void> fill(List<Person> people) {
+        return Flux.fromIterable(people)
+                .flatMap(person -> personReactiveRedisTemplate.opsForValue()
+                        .setIfAbsent(personCacheKeys.personKey(person.getId()), person, cacheProperties.getCleanTtl()))
+                .then(Mono.fromRunnable(() -> {
+                    fillsCounter.increment(people.size());
+                    people.forEach(personNearCache::put);
+                    personKnownIds.add(people.stream().map(Person::getId).toList());
+                }));
+    }
+
+    // ZADD NX keeps the time a person was first queued, which the reactive sorted set operations cannot express
+    private Mono<Void> queue(String writeBackKey, List<String> personIds, long queuedAt) {
+        final var tuples = personIds.stream()
+                .map(personId -> (Tuple) new DefaultTuple(personId.getBytes(StandardCharsets.UTF_8), (double) queuedAt))
+                .toList();
+        final var command = ReactiveZSetCommands.ZAddCommand.tuples(tuples)
+                .nx()
+                .to(ByteBuffer.wrap(writeBackKey.getBytes(StandardCharsets.UTF_8)));
+
+        return reactiveStringRedisTemplate.execute(connection -> connection.zSetCommands().zAdd(Mono.just(command)))
+                .then();
+    }
+
+    private static <T> Mono<T> timed(Timer timer, Mono<T> mono) {
+        return Mono.defer(() -> {
+            final var sample = Timer.start();
+            return mono.doFinally(signalType -> sample.stop(timer));
+        });
+    }
+}
@@ -1,10 +1,22 @@
 package com.example.person;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface PersonService {
 
     Person create(String name, Integer age);
 
+    List<Person> createAll(List<Person> people);
+
+    // For a batch created in chunks, admitted by the backpressure policy as a whole before the first one
+    List<Person> createAll(List<Person> people, PersonBackpressure.Admission admission);
+
     Person findOne(UUID personId) throws PersonNotFoundException;
+
+    List<Person> findAll(List<UUID> personIds);
+
+    Person update(UUID personId, String name, Integer age) throws PersonNotFoundException;
+
+    void delete(UUID personId) throws PersonNotFoundException;
 }
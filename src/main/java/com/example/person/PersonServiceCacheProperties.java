@@ -4,12 +4,128 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
 @ConfigurationProperties(prefix = "person-service.cache")
 @Getter
 @Setter
 public class PersonServiceCacheProperties {
 
+    private String nodeId = UUID.randomUUID().toString();
+
+    private Serializer serializer = Serializer.JSON;
+
     private long writeBackRate;
 
     private String writeBackKey;
+
+    private int writeBackPartitions = 4;
+
+    private int writeBackConcurrency = 0;
+
+    private int writeBackBatchSize = 500;
+
+    private Duration writeBackMaxFlushDuration = Duration.ofSeconds(30);
+
+    private Duration writeBackClaimTimeout = Duration.ofMinutes(5);
+
+    private long writeBackHighWaterMark = 10_000;
+
+    private Duration writeBackMaxStaleness = Duration.ofSeconds(30);
+
+    private Duration cleanTtl = Duration.ofMinutes(10);
+
+    private boolean cleanTtlSliding = true;
+
+    private Duration notFoundTtl = Duration.ofSeconds(30);
+
+    private boolean loadLockEnabled = false;
+
+    private Duration loadLockTimeout = Duration.ofSeconds(1);
+
+    private Duration loadLockPollInterval = Duration.ofMillis(20);
+
+    private boolean knownIdsFilterEnabled = false;
+
+    private long knownIdsFilterExpectedInsertions = 1_000_000;
+
+    private double knownIdsFilterFalsePositiveRate = 0.01;
+
+    private int knownIdsFilterConfirmationsPerSecond = 100;
+
+    private int knownIdsFilterLoadPageSize = 10_000;
+
+    private String knownIdsChannel = "person:known_ids";
+
+    private boolean writeBufferEnabled = false;
+
+    private WriteBufferDurability writeBufferDurability = WriteBufferDurability.REDIS;
+
+    private Duration writeBufferFlushInterval = Duration.ofMillis(2);
+
+    private int writeBufferMaxBatchSize = 256;
+
+    private int writeBufferCapacity = 100_000;
+
+    private Duration writeBufferShutdownTimeout = Duration.ofSeconds(10);
+
+    private boolean journalEnabled = false;
+
+    private Path journalDirectory = Path.of("person-journal");
+
+    private Duration journalReplayInterval = Duration.ofSeconds(1);
+
+    private int journalReplayBatchSize = 500;
+
+    private JournalReplayTarget journalReplayTarget = JournalReplayTarget.REDIS;
+
+    private boolean warmUpEnabled = false;
+
+    private long warmUpMaxPeople = 100_000;
+
+    private int warmUpPageSize = 1_000;
+
+    private int warmUpReadyPercentage = 100;
+
+    private boolean nearCacheEnabled = false;
+
+    private long nearCacheMaximumSize = 10_000;
+
+    private Duration nearCacheTtl = Duration.ofSeconds(30);
+
+    private String nearCacheInvalidationChannel = "person:invalidation";
+
+    private BackpressurePolicy backpressurePolicy = BackpressurePolicy.NONE;
+
+    private long backpressureHighWaterMark = 100_000;
+
+    private Duration backpressureSampleInterval = Duration.ofMillis(500);
+
+    private Duration backpressureMaxThrottle = Duration.ofSeconds(1);
+
+    private Duration backpressureRetryAfter = Duration.ofSeconds(1);
+
+    public enum Serializer {
+        JSON,
+        BINARY
+    }
+
+    public enum WriteBufferDurability {
+        REDIS,
+        BUFFER
+    }
+
+    public enum JournalReplayTarget {
+        REDIS,
+        DATABASE
+    }
+
+    public enum BackpressurePolicy {
+        NONE,
+        THROTTLE,
+        REJECT,
+        WRITE_THROUGH
+    }
 }
@@ -1,67 +1,538 @@
 package com.example.person;
 
-import jakarta.transaction.Transactional;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 @Service
 public class PersonServiceDefault implements PersonService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PersonServiceDefault.class);
 
+    private static final RedisScript<Long> UNLOCK_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_cache_unlock.lua"), Long.class);
+
     private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
     private final PersonRepository personRepository;
 
     private final RedisTemplate<String, Person> personRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PersonCacheScripts personCacheScripts;
+    private final PersonNearCache personNearCache;
+    private final PersonWriteBuffer personWriteBuffer;
+    private final PersonCacheWriter personCacheWriter;
+    private final PersonBackpressure personBackpressure;
+    private final PersonKnownIds personKnownIds;
+    private final PersonWriteBackScheduler personWriteBackScheduler;
+
+    private final ConcurrentHashMap<UUID, CompletableFuture<Optional<Person>>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private final Counter mutationsCounter;
+    private final Counter fillsCounter;
+    private final Counter nearCacheHitsCounter;
+    private final Counter cacheHitsCounter;
+    private final Counter databaseHitsCounter;
+    private final Counter notFoundCounter;
+    private final Counter notFoundCacheHitsCounter;
+    private final Counter knownIdsFilterHitsCounter;
+    private final Counter coalescedLoadsCounter;
+    private final Timer createTimer;
+    private final Timer createAllTimer;
+    private final Timer findOneTimer;
+    private final Timer findAllTimer;
+    private final Timer updateTimer;
+    private final Timer deleteTimer;
 
     public PersonServiceDefault(PersonServiceCacheProperties cacheProperties,
+                                PersonCacheKeys personCacheKeys,
                                 PersonRepository personRepository,
-                                RedisTemplate<String, Person> personRedisTemplate) {
+                                RedisTemplate<String, Person> personRedisTemplate,
+                                StringRedisTemplate stringRedisTemplate,
+                                PersonCacheScripts personCacheScripts,
+                                PersonNearCache personNearCache,
+                                PersonWriteBuffer personWriteBuffer,
+                                PersonCacheWriter personCacheWriter,
+                                PersonBackpressure personBackpressure,
+                                PersonKnownIds personKnownIds,
+                                PersonWriteBackScheduler personWriteBackScheduler,
+                                MeterRegistry meterRegistry) {
         this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
         this.personRepository = personRepository;
         this.personRedisTemplate = personRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.personCacheScripts = personCacheScripts;
+        this.personNearCache = personNearCache;
+        this.personWriteBuffer = personWriteBuffer;
+        this.personCacheWriter = personCacheWriter;
+        this.personBackpressure = personBackpressure;
+        this.personKnownIds = personKnownIds;
+        this.personWriteBackScheduler = personWriteBackScheduler;
+        this.mutationsCounter = PersonServiceMeters.mutationsCounter(meterRegistry);
+        this.fillsCounter = PersonServiceMeters.fillsCounter(meterRegistry);
+        this.nearCacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "near_cache");
+        this.cacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "cache");
+        this.databaseHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "database");
+        this.notFoundCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "none");
+        this.notFoundCacheHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "not_found_cache");
+        this.knownIdsFilterHitsCounter = PersonServiceMeters.lookupsCounter(meterRegistry, "known_ids_filter");
+        this.coalescedLoadsCounter = PersonServiceMeters.coalescedLoadsCounter(meterRegistry);
+        this.createTimer = PersonServiceMeters.operationTimer(meterRegistry, "create");
+        this.createAllTimer = PersonServiceMeters.operationTimer(meterRegistry, "create_all");
+        this.findOneTimer = PersonServiceMeters.operationTimer(meterRegistry, "find_one");
+        this.findAllTimer = PersonServiceMeters.operationTimer(meterRegistry, "find_all");
+        this.updateTimer = PersonServiceMeters.operationTimer(meterRegistry, "update");
+        this.deleteTimer = PersonServiceMeters.operationTimer(meterRegistry, "delete");
     }
 
+    // Only Redis is written, so no database connection is taken from the pool while the request waits on it, unless
+    // the write back is so far behind that the backpressure policy writes through
     @Override
-    @Transactional
     public Person create(String name, Integer age) {
-        final var person = new Person();
-        person.setId(UUID.randomUUID());
-        person.setName(name);
-        person.setAge(age);
+        return createTimer.record(() -> {
+            final var person = new Person();
+            person.setId(UUID.randomUUID());
+            person.setVersion(1);
+            person.setName(name);
+            person.setAge(age);
+
+            write(List.of(person), personBackpressure.admit(1));
+            personKnownIds.add(List.of(person.getId()));
+            personNearCache.put(person);
+            LOGGER.debug("Person cached (key={}, value={})", person.getId(), person);
+
+            return person;
+        });
+    }
+
+    @Override
+    public List<Person> createAll(List<Person> people) {
+        return createAll(people, personBackpressure.admit(people.size()));
+    }
 
-        personRedisTemplate.boundValueOps(person.getId().toString()).set(person);
-        personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey()).add(person);
-        LOGGER.info("Person cached (key={}, value={})", person.getId(), person);
+    @Override
+    public List<Person> createAll(List<Person> people, PersonBackpressure.Admission admission) {
+        return createAllTimer.record(() -> {
+            people.forEach(person -> {
+                person.setId(UUID.randomUUID());
+                person.setVersion(1);
+            });
+
+            write(people, admission);
+            personKnownIds.add(people.stream().map(Person::getId).toList());
+            people.forEach(personNearCache::put);
+            LOGGER.debug("People cached (amount={})", people.size());
 
-        return person;
+            return people;
+        });
     }
 
     @Override
     public Person findOne(UUID personId) throws PersonNotFoundException {
-        final var personOnCache = personRedisTemplate.boundValueOps(personId.toString()).get();
-        if (personOnCache != null) {
-            LOGGER.info("Person retrieved from cache (personId={})", personId);
-            return personOnCache;
+        return findOneTimer.record(() -> {
+            // People still in the write buffer are local as well, so they count as near cache hits
+            final var personOnNearCache = personWriteBuffer.get(personId).or(() -> personNearCache.get(personId));
+            if (personOnNearCache.isPresent()) {
+                nearCacheHitsCounter.increment();
+                return personOnNearCache.get();
+            }
+
+            // A negative answer of the known IDs filter stands in for the not found cache, but is still confirmed
+            // while confirmations are left, since the announcement of a person created on another node may be lost
+            final var mightExist = personKnownIds.mightExist(personId);
+            if (!mightExist && !personKnownIds.tryConfirm()) {
+                knownIdsFilterHitsCounter.increment();
+                LOGGER.debug("Person not found by known IDs filter (personId={})", personId);
+                throw new PersonNotFoundException(personId);
+            }
+            if (mightExist && personNearCache.isMissing(personId)) {
+                notFoundCacheHitsCounter.increment();
+                throw new PersonNotFoundException(personId);
+            }
+
+            final var personOnCache = personCacheScripts.get(List.of(personCacheKeys.personKey(personId))).get(0);
+            if (personOnCache != null && personOnCache.isDeleted()) {
+                notFoundCacheHitsCounter.increment();
+                LOGGER.debug("Person deleted on cache (personId={})", personId);
+                personNearCache.put(personOnCache);
+                throw new PersonNotFoundException(personId);
+            }
+            if (personOnCache != null) {
+                cacheHitsCounter.increment();
+                LOGGER.debug("Person retrieved from cache (personId={})", personId);
+                personNearCache.put(personOnCache);
+                return personOnCache;
+            }
+
+            if (mightExist && isNotFoundCacheEnabled()
+                    && Boolean.TRUE.equals(stringRedisTemplate.hasKey(personCacheKeys.notFoundKey(personId)))) {
+                notFoundCacheHitsCounter.increment();
+                LOGGER.debug("Person not found by not found cache (personId={})", personId);
+                personNearCache.putMissing(personId);
+                throw new PersonNotFoundException(personId);
+            }
+
+            return loadOnce(personId).orElseThrow(() -> new PersonNotFoundException(personId));
+        });
+    }
+
+    @Override
+    public List<Person> findAll(List<UUID> personIds) {
+        return findAllTimer.record(() -> {
+            final var peopleById = new HashMap<UUID, Person>();
+
+            final var personIdsNotOnNearCache = new ArrayList<UUID>();
+            final var personIdsUnknown = new HashSet<UUID>();
+            var amountOfPeopleMissing = 0;
+            for (final var personId : new LinkedHashSet<>(personIds)) {
+                if (!personKnownIds.mightExist(personId)) {
+                    if (!personKnownIds.tryConfirm()) {
+                        knownIdsFilterHitsCounter.increment();
+                        continue;
+                    }
+                    personIdsUnknown.add(personId);
+                } else if (personNearCache.isMissing(personId)) {
+                    amountOfPeopleMissing++;
+                    continue;
+                }
+                personWriteBuffer.get(personId).or(() -> personNearCache.get(personId)).ifPresentOrElse(
+                        person -> peopleById.put(personId, person),
+                        () -> personIdsNotOnNearCache.add(personId)
+                );
+            }
+            nearCacheHitsCounter.increment(peopleById.size());
+            notFoundCacheHitsCounter.increment(amountOfPeopleMissing);
+
+            var personIdsNotCached = new ArrayList<UUID>();
+            if (!personIdsNotOnNearCache.isEmpty()) {
+                final var peopleOnCache = personCacheScripts.get(
+                        personIdsNotOnNearCache.stream().map(personCacheKeys::personKey).toList());
+
+                var amountOfPeopleDeleted = 0;
+                for (var index = 0; index < peopleOnCache.size(); index++) {
+                    final var person = peopleOnCache.get(index);
+                    if (person == null) {
+                        personIdsNotCached.add(personIdsNotOnNearCache.get(index));
+                        continue;
+                    }
+                    if (person.isDeleted()) {
+                        amountOfPeopleDeleted++;
+                        personNearCache.put(person);
+                        continue;
+                    }
+                    peopleById.put(person.getId(), person);
+                    personNearCache.put(person);
+                }
+                cacheHitsCounter.increment(personIdsNotOnNearCache.size() - personIdsNotCached.size() - amountOfPeopleDeleted);
+                notFoundCacheHitsCounter.increment(amountOfPeopleDeleted);
+                final var personIdsNotCachedUnknown = personIdsNotCached.stream().filter(personIdsUnknown::contains).toList();
+                personIdsNotCached = withoutMissing(personIdsNotCached.stream()
+                        .filter(personId -> !personIdsUnknown.contains(personId))
+                        .toList());
+                personIdsNotCached.addAll(personIdsNotCachedUnknown);
+            }
+
+            if (!personIdsNotCached.isEmpty()) {
+                final var peopleNotCached = new ArrayList<Person>();
+                personRepository.findAllById(personIdsNotCached).forEach(peopleNotCached::add);
+                fill(peopleNotCached);
+                peopleNotCached.forEach(person -> peopleById.put(person.getId(), person));
+                databaseHitsCounter.increment(peopleNotCached.size());
+                notFoundCounter.increment(personIdsNotCached.size() - peopleNotCached.size());
+
+                final var personIdsFound = peopleNotCached.stream().map(Person::getId).collect(Collectors.toSet());
+                rememberMissing(personIdsNotCached.stream().filter(personId -> !personIdsFound.contains(personId)).toList());
+            }
+
+            LOGGER.debug("People retrieved (requested={}, cached={}, persisted={}, found={})",
+                    personIds.size(), personIdsNotOnNearCache.size() - personIdsNotCached.size(),
+                    personIdsNotCached.size(), peopleById.size());
+
+            return personIds.stream()
+                    .map(peopleById::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+        });
+    }
+
+    // Only Redis is written, and several changes to a person before it is written back reach the database as one
+    @Override
+    public Person update(UUID personId, String name, Integer age) throws PersonNotFoundException {
+        return updateTimer.record(() -> change(personId, person -> person.updated(name, age)));
+    }
+
+    @Override
+    public void delete(UUID personId) throws PersonNotFoundException {
+        deleteTimer.record(() -> change(personId, Person::tombstone));
+    }
+
+    // Changes are applied to the value read only if no other change was cached meanwhile, otherwise read again. They
+    // are admitted like creates, since they queue the person for write back just the same
+    private Person change(UUID personId, UnaryOperator<Person> change) {
+        final var admission = personBackpressure.admit(1);
+        while (true) {
+            final var personCached = personCacheScripts.getForChange(personId);
+            final var person = personCached.length > 0
+                    ? personCacheScripts.deserialize(personCached)
+                    : personWriteBuffer.get(personId).or(() -> personRepository.findById(personId)).orElse(null);
+            if (person == null || person.isDeleted()) {
+                throw new PersonNotFoundException(personId);
+            }
+
+            final var personChanged = change.apply(person);
+            final var changed = admission == PersonBackpressure.Admission.WRITE_THROUGH
+                    ? personCacheScripts.changeUnqueued(personCached, personChanged)
+                    : personCacheScripts.change(personCached, personChanged);
+            if (changed) {
+                personWriteBuffer.discard(personId);
+                if (admission == PersonBackpressure.Admission.WRITE_THROUGH) {
+                    changeThrough(personChanged);
+                } else {
+                    mutationsCounter.increment();
+                    personWriteBackScheduler.queued(1);
+                }
+                personNearCache.invalidate(personId);
+                personNearCache.put(personChanged);
+                LOGGER.debug("Person changed on cache (personId={}, value={})", personId, personChanged);
+
+                return personChanged;
+            }
+            LOGGER.debug("Person changed concurrently, changing it again (personId={})", personId);
+        }
+    }
+
+    // Persisted only once cached, so it never overwrites a change cached after it, then expired like a flushed person
+    // unless changed again meanwhile. The change is cached already, so it is queued for write back if the database fails
+    private void changeThrough(Person personChanged) {
+        try {
+            personRepository.upsertAll(List.of(personChanged));
+        } catch (DataAccessException exception) {
+            personCacheScripts.queue(personChanged.getId());
+            mutationsCounter.increment();
+            personWriteBackScheduler.queued(1);
+            LOGGER.debug("Person changed could not be written through, queued for write back (personId={})",
+                    personChanged.getId(), exception);
+            return;
         }
 
+        personCacheScripts.expireFlushed(List.of(personChanged));
+    }
+
+    // Only the first caller missing a person reads the database, while the others on this node wait for its result
+    private Optional<Person> loadOnce(UUID personId) {
+        final var load = new CompletableFuture<Optional<Person>>();
+        final var loadInFlight = loadsInFlight.putIfAbsent(personId, load);
+        if (loadInFlight != null) {
+            coalescedLoadsCounter.increment();
+            try {
+                return loadInFlight.join();
+            } catch (CompletionException exception) {
+                if (exception.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw exception;
+            }
+        }
+
+        try {
+            // A load may have finished between missing the cache and getting here
+            final var personOnCache = personCacheScripts.get(List.of(personCacheKeys.personKey(personId))).get(0);
+            if (personOnCache != null) {
+                cacheHitsCounter.increment();
+                final var personFound = Optional.of(personOnCache).filter(person -> !person.isDeleted());
+                load.complete(personFound);
+                return personFound;
+            }
+
+            final var person = cacheProperties.isLoadLockEnabled() ? loadLocked(personId) : load(personId);
+            load.complete(person);
+            return person;
+        } catch (RuntimeException exception) {
+            load.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            loadsInFlight.remove(personId, load);
+        }
+    }
+
+    // The same across nodes: the node holding the lock loads the person, while the others poll the cache for it, and
+    // load it themselves if the lock is released or expires without the person or its absence being cached
+    private Optional<Person> loadLocked(UUID personId) {
+        final var loadLockKey = personCacheKeys.loadLockKey(personId);
+        final var token = cacheProperties.getNodeId() + ":" + Thread.currentThread().threadId();
+
+        final var locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(loadLockKey, token, cacheProperties.getLoadLockTimeout());
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                return load(personId);
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(loadLockKey), token);
+            }
+        }
+
+        final var deadline = System.nanoTime() + cacheProperties.getLoadLockTimeout().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(cacheProperties.getLoadLockPollInterval());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            final var personOnCache = personCacheScripts.get(List.of(personCacheKeys.personKey(personId))).get(0);
+            if (personOnCache != null && personOnCache.isDeleted()) {
+                coalescedLoadsCounter.increment();
+                personNearCache.put(personOnCache);
+                return Optional.empty();
+            }
+            if (personOnCache != null) {
+                coalescedLoadsCounter.increment();
+                personNearCache.put(personOnCache);
+                return Optional.of(personOnCache);
+            }
+            if (isNotFoundCacheEnabled() && Boolean.TRUE.equals(stringRedisTemplate.hasKey(personCacheKeys.notFoundKey(personId)))) {
+                coalescedLoadsCounter.increment();
+                personNearCache.putMissing(personId);
+                return Optional.empty();
+            }
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(loadLockKey))) {
+                break;
+            }
+        }
+
+        return load(personId);
+    }
+
+    private Optional<Person> load(UUID personId) {
         final var personNotCached = personRepository.findById(personId);
         if (personNotCached.isPresent()) {
-            LOGGER.info("Person retrieved from database (personId={})", personId);
+            databaseHitsCounter.increment();
+            LOGGER.debug("Person retrieved from database (personId={})", personId);
 
+            // A clean copy of the row, so it expires on its own and is never queued for write back. Setting it
+            // only if absent keeps a fill from overwriting a change cached while the row was being read
             final var person = personNotCached.get();
-            personRedisTemplate.boundValueOps(person.getId().toString()).set(person);
-            personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey()).add(person);
-            LOGGER.info("Person cached (key={}, value={})", personId, person);
+            personRedisTemplate.boundValueOps(personCacheKeys.personKey(personId))
+                    .setIfAbsent(person, cacheProperties.getCleanTtl());
+            fillsCounter.increment();
+            personNearCache.put(person);
+            personKnownIds.add(List.of(personId));
+            LOGGER.debug("Person cached (key={}, value={}, ttl={})", personId, person, cacheProperties.getCleanTtl());
 
-            return person;
+            return Optional.of(person);
+        }
+
+        notFoundCounter.increment();
+        LOGGER.debug("Person not found (personId={})", personId);
+        rememberMissing(List.of(personId));
+        return Optional.empty();
+    }
+
+    private boolean isNotFoundCacheEnabled() {
+        return cacheProperties.getNotFoundTtl().isPositive();
+    }
+
+    // Asked only for people missing on cache, so the extra round trip replaces a database query instead of a hit
+    private ArrayList<UUID> withoutMissing(List<UUID> personIds) {
+        if (personIds.isEmpty() || !isNotFoundCacheEnabled()) {
+            return new ArrayList<>(personIds);
+        }
+
+        final var missing = stringRedisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                personIds.forEach(personId -> stringRedisTemplate.hasKey(personCacheKeys.notFoundKey(personId)));
+                return null;
+            }
+        });
+
+        final var personIdsNotMissing = new ArrayList<UUID>();
+        for (var index = 0; index < personIds.size(); index++) {
+            final var personId = personIds.get(index);
+            if (Boolean.TRUE.equals(missing.get(index))) {
+                personNearCache.putMissing(personId);
+                continue;
+            }
+            personIdsNotMissing.add(personId);
+        }
+        notFoundCacheHitsCounter.increment(personIds.size() - personIdsNotMissing.size());
+
+        return personIdsNotMissing;
+    }
+
+    private void rememberMissing(List<UUID> personIds) {
+        if (personIds.isEmpty() || !isNotFoundCacheEnabled()) {
+            return;
+        }
+
+        stringRedisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                for (final var personId : personIds) {
+                    stringRedisTemplate.opsForValue()
+                            .set(personCacheKeys.notFoundKey(personId), "", cacheProperties.getNotFoundTtl());
+                }
+                return null;
+            }
+        });
+        personIds.forEach(personNearCache::putMissing);
+    }
+
+    // Queues the people for write back, unless too many are waiting already and the backpressure policy said otherwise
+    private void write(List<Person> people, PersonBackpressure.Admission admission) {
+        if (admission == PersonBackpressure.Admission.WRITE_THROUGH) {
+            personCacheWriter.writeThrough(people);
+            return;
+        }
+
+        personWriteBuffer.write(people);
+        mutationsCounter.increment(people.size());
+        personWriteBackScheduler.queued(people.size());
+    }
+
+    private void fill(List<Person> people) {
+        if (people.isEmpty()) {
+            return;
         }
 
-        LOGGER.info("Person not found (personId={})", personId);
-        throw new PersonNotFoundException(personId);
+        personRedisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                for (final var person : people) {
+                    personRedisTemplate.opsForValue()
+                            .setIfAbsent(personCacheKeys.personKey(person.getId()), person, cacheProperties.getCleanTtl());
+                }
+                return null;
+            }
+        });
+        fillsCounter.increment(people.size());
+        people.forEach(personNearCache::put);
+        personKnownIds.add(people.stream().map(Person::getId).toList());
     }
 }
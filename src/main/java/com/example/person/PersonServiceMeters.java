@@ -0,0 +1,51 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Meters reported by both the blocking and the reactive services, registered the same way whichever profile is active
+final class PersonServiceMeters {
+
+    private PersonServiceMeters() {
+    }
+
+    static Counter mutationsCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("person.cache.mutations")
+                .description("People changed on cache and queued for write back")
+                .register(meterRegistry);
+    }
+
+    static Counter fillsCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("person.cache.fills")
+                .description("People loaded from the database into the cache")
+                .register(meterRegistry);
+    }
+
+    static Counter lookupsCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("person.cache.lookups")
+                .description("People looked up, by where they were found")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    static Counter coalescedLoadsCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("person.cache.coalesced_loads")
+                .description("Lookups that waited for another one to load the same person from the database")
+                .register(meterRegistry);
+    }
+
+    static Counter journaledCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("person.journal.appended")
+                .description("People journaled because Redis could not take them")
+                .register(meterRegistry);
+    }
+
+    static Timer operationTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("person.service")
+                .description("Time spent by person service operations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -3,4 +3,6 @@ package com.example.person;
 public interface PersonWriteBackJob {
 
     void writeBack();
+
+    long getBacklog();
 }
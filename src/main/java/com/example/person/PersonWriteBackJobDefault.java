@@ -1,55 +1,361 @@
 package com.example.person;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class PersonWriteBackJobDefault implements PersonWriteBackJob {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PersonWriteBackJobDefault.class);
 
+    private static final RedisScript<Object> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_write_back_claim.lua"));
+    private static final RedisScript<Long> ACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_write_back_ack.lua"), Long.class);
+    private static final RedisScript<Long> RECLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_write_back_reclaim.lua"), Long.class);
+
     private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
     private final PersonRepository personRepository;
     private final RedisTemplate<String, Person> personRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PersonCacheScripts personCacheScripts;
+    private final PersonWriteBackPartitions personWriteBackPartitions;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final ExecutorService partitionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore concurrencyLimit;
+    private volatile AtomicLongArray backlogs;
+    private volatile AtomicLongArray oldestQueuedAts;
+
+    private final Counter persistedCounter;
+    private final Counter failuresCounter;
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizeSummary;
 
     public PersonWriteBackJobDefault(PersonServiceCacheProperties cacheProperties,
+                                     PersonCacheKeys personCacheKeys,
                                      PersonRepository personRepository,
-                                     RedisTemplate<String, Person> personRedisTemplate) {
+                                     RedisTemplate<String, Person> personRedisTemplate,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     PersonCacheScripts personCacheScripts,
+                                     PersonWriteBackPartitions personWriteBackPartitions,
+                                     TransactionTemplate transactionTemplate,
+                                     DataSource dataSource,
+                                     MeterRegistry meterRegistry) {
         this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
         this.personRepository = personRepository;
         this.personRedisTemplate = personRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.personCacheScripts = personCacheScripts;
+        this.personWriteBackPartitions = personWriteBackPartitions;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.concurrencyLimit = new Semaphore(concurrencyOf(cacheProperties, dataSource));
+        this.backlogs = new AtomicLongArray(cacheProperties.getWriteBackPartitions());
+        this.oldestQueuedAts = new AtomicLongArray(cacheProperties.getWriteBackPartitions());
+        this.persistedCounter = Counter.builder("person.write_back.persisted")
+                .description("People written back from cache to database")
+                .register(meterRegistry);
+        this.failuresCounter = Counter.builder("person.write_back.failures")
+                .description("Write back runs interrupted by an error")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("person.write_back.flush")
+                .description("Time spent writing a batch of people back to database")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("person.write_back.batch_size")
+                .description("People written back per batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Registered once constructed, since the backlog gauge holds on to this job
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("person.write_back.backlog", this, PersonWriteBackJob::getBacklog)
+                .description("People queued for write back when the last run finished")
+                .register(meterRegistry);
+        Gauge.builder("person.write_back.oldest_age", this, PersonWriteBackJobDefault::getOldestAge)
+                .description("Time since the oldest person queued for write back was queued")
+                .baseUnit("seconds")
+                .register(meterRegistry);
     }
 
     @Override
-    @Scheduled(fixedRateString = "${person-service.cache.write-back-rate}")
     public void writeBack() {
-        final var amountOfPeopleToPersist = personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey()).size();
-        if (amountOfPeopleToPersist == null || amountOfPeopleToPersist == 0) {
-            LOGGER.info("None people to write back from cache to database");
+        // Runs may be requested by the scheduler and by a backlog burst at the same time
+        if (!runLock.tryLock()) {
+            LOGGER.debug("Write back already running, skipping this run");
             return;
         }
 
-        LOGGER.info("Found {} people to write back from cache to database", amountOfPeopleToPersist);
-        final var setOperations = personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey());
-        final var scanOptions = ScanOptions.scanOptions().build();
+        try {
+            writeBackPartitions();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    @Override
+    public long getBacklog() {
+        final var backlogs = this.backlogs;
+        var amountOfPeopleQueued = 0L;
+        for (var partition = 0; partition < backlogs.length(); partition++) {
+            amountOfPeopleQueued += backlogs.get(partition);
+        }
+        return amountOfPeopleQueued;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partitionExecutor.shutdown();
+    }
+
+    // Partitions are drained concurrently, each one by a single worker. Those left over by a node configured with more
+    // partitions are drained too, so a person queued on one of them and on its current partition may be flushed twice
+    // at once, which the versioned upsert keeps in order
+    private void writeBackPartitions() {
+        final var deadline = System.nanoTime() + cacheProperties.getWriteBackMaxFlushDuration().toNanos();
+        final var amountOfPartitions = personWriteBackPartitions.register();
+        if (amountOfPartitions != backlogs.length()) {
+            backlogs = new AtomicLongArray(amountOfPartitions);
+            oldestQueuedAts = new AtomicLongArray(amountOfPartitions);
+        }
+
+        final var partitionTasks = new ArrayList<Future<Integer>>(amountOfPartitions);
+        for (var partition = 0; partition < amountOfPartitions; partition++) {
+            final var partitionToWriteBack = partition;
+            partitionTasks.add(partitionExecutor.submit(() -> writeBackPartition(partitionToWriteBack, deadline)));
+        }
+
+        var amountOfPeoplePersisted = 0;
+        for (final var partitionTask : partitionTasks) {
+            try {
+                amountOfPeoplePersisted += partitionTask.get();
+            } catch (ExecutionException exception) {
+                LOGGER.error("Unexpected error writing back a partition", exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (amountOfPeoplePersisted == 0) {
+            LOGGER.debug("None people to write back from cache to database");
+        } else {
+            LOGGER.info("Persisted {} people in the database", amountOfPeoplePersisted);
+        }
+
+        personWriteBackPartitions.releaseDrained();
+        purgeTombstones();
+    }
+
+    // A tombstone only matters while an older copy of the person may still be written back, from a backlog flushed
+    // within the max staleness or a batch reclaimed after the claim timeout, so older ones are deleted a batch per run
+    private void purgeTombstones() {
+        final var maxStaleness = cacheProperties.getWriteBackMaxStaleness();
+        final var retention = max(maxStaleness, cacheProperties.getWriteBackClaimTimeout());
+        try {
+            final var amountOfPeoplePurged =
+                    personRepository.purgeTombstones(retention, cacheProperties.getWriteBackBatchSize());
+            if (amountOfPeoplePurged > 0) {
+                LOGGER.info("Purged {} deleted people from the database", amountOfPeoplePurged);
+            }
+        } catch (DataAccessException exception) {
+            LOGGER.error("Error purging deleted people from the database", exception);
+        }
+    }
+
+    private static Duration max(Duration first, Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private int writeBackPartition(int partition, long deadline) {
+        final var writeBackKey = personCacheKeys.writeBackKey(partition);
+        final var inFlightKey = personCacheKeys.inFlightKey(partition);
+        final var claimsKey = personCacheKeys.claimsKey(partition);
 
-        try (final var cursor = setOperations.scan(scanOptions)) {
-            assert cursor != null;
-            while (cursor.hasNext()) {
-                final var person = cursor.next();
-                personRepository.save(person);
-                LOGGER.info("Person saved (person={})", person);
+        // Each worker holds a database connection while flushing, so they are limited by the connection pool
+        concurrencyLimit.acquireUninterruptibly();
+        var amountOfPeoplePersisted = 0;
+        try {
+            reclaimAbandonedBatches(writeBackKey, claimsKey);
 
-                personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey()).remove(person);
-                LOGGER.info("Person removed from {} set (person={})", cacheProperties.getWriteBackKey(), person);
+            while (System.nanoTime() < deadline) {
+                final var personIds = personCacheScripts.evalList(
+                        CLAIM_SCRIPT,
+                        List.of(writeBackKey, inFlightKey, claimsKey),
+                        String.valueOf(cacheProperties.getWriteBackBatchSize()),
+                        String.valueOf(System.currentTimeMillis())
+                ).stream().map(personId -> new String(personId, StandardCharsets.UTF_8)).toList();
+                if (personIds.isEmpty()) {
+                    break;
+                }
+
+                amountOfPeoplePersisted += flushTimer.record(() -> flush(writeBackKey, personIds));
+                stringRedisTemplate.execute(ACK_SCRIPT, List.of(inFlightKey, claimsKey));
             }
-            LOGGER.info("Persisted {} people in the database", amountOfPeopleToPersist);
+
+            sampleBacklog(partition, writeBackKey);
         } catch (RuntimeException exception) {
-            LOGGER.error("Error reading {} set from Redis", cacheProperties.getWriteBackKey(), exception);
+            failuresCounter.increment();
+            LOGGER.error("Error writing back {} set, in-flight batch kept in {}", writeBackKey, inFlightKey, exception);
+        } finally {
+            concurrencyLimit.release();
+        }
+
+        return amountOfPeoplePersisted;
+    }
+
+    // Each abandoned in-flight set is reclaimed by its own script call, so every key a script touches is declared
+    private void reclaimAbandonedBatches(String writeBackKey, String claimsKey) {
+        final var staleBefore = System.currentTimeMillis() - cacheProperties.getWriteBackClaimTimeout().toMillis();
+        final var abandonedKeys = stringRedisTemplate.opsForZSet()
+                .rangeByScore(claimsKey, Double.NEGATIVE_INFINITY, staleBefore);
+        if (abandonedKeys == null || abandonedKeys.isEmpty()) {
+            return;
+        }
+
+        var amountOfPeopleReclaimed = 0L;
+        for (final var inFlightKey : abandonedKeys) {
+            final var amountOfPeopleInFlight = stringRedisTemplate.execute(
+                    RECLAIM_SCRIPT,
+                    List.of(writeBackKey, claimsKey, inFlightKey),
+                    String.valueOf(staleBefore)
+            );
+            amountOfPeopleReclaimed += amountOfPeopleInFlight == null ? 0 : amountOfPeopleInFlight;
+        }
+        if (amountOfPeopleReclaimed > 0) {
+            LOGGER.warn("Reclaimed {} people from abandoned in-flight batches into {} set",
+                    amountOfPeopleReclaimed, writeBackKey);
+        }
+    }
+
+    private void sampleBacklog(int partition, String writeBackKey) {
+        final var setOperations = stringRedisTemplate.boundZSetOps(writeBackKey);
+
+        final var amountOfPeopleQueued = setOperations.size();
+        backlogs.set(partition, amountOfPeopleQueued == null ? 0 : amountOfPeopleQueued);
+
+        final var oldest = setOperations.rangeWithScores(0, 0);
+        if (oldest == null || oldest.isEmpty()) {
+            oldestQueuedAts.set(partition, 0);
+        } else {
+            final var score = oldest.iterator().next().getScore();
+            oldestQueuedAts.set(partition, score == null ? 0 : score.longValue());
+        }
+    }
+
+    private int flush(String writeBackKey, List<String> personIds) {
+        final var startTime = System.nanoTime();
+
+        // The set only holds IDs, so the value flushed is whatever is cached when the batch is claimed
+        final var personKeys = personIds.stream()
+                .map(personId -> personCacheKeys.personKey(UUID.fromString(personId)))
+                .toList();
+        final var people = personRedisTemplate.opsForValue().multiGet(personKeys);
+        assert people != null;
+
+        final var peopleToPersist = new ArrayList<Person>(people.size());
+        for (var index = 0; index < people.size(); index++) {
+            final var person = people.get(index);
+            if (person == null) {
+                LOGGER.warn("Person queued for write back is no longer cached (personId={})", personIds.get(index));
+                continue;
+            }
+            peopleToPersist.add(person);
+        }
+        if (!peopleToPersist.isEmpty()) {
+            // Several changes to a person while it was queued are written back once, as whatever it ended up as
+            transactionTemplate.executeWithoutResult(status -> personRepository.upsertAll(peopleToPersist));
+            persistedCounter.increment(peopleToPersist.size());
+            expireFlushed(writeBackKey, peopleToPersist);
+        }
+        batchSizeSummary.record(peopleToPersist.size());
+
+        LOGGER.debug("Flushed {} people from {} set in {} ms",
+                peopleToPersist.size(), writeBackKey,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        return peopleToPersist.size();
+    }
+
+    // A person queued again since it was claimed is still dirty, so it is left for its next flush
+    private void expireFlushed(String writeBackKey, List<Person> peopleFlushed) {
+        final var scores = stringRedisTemplate.opsForZSet().score(writeBackKey, peopleFlushed.stream()
+                .map(person -> person.getId().toString())
+                .toArray());
+        assert scores != null;
+
+        final var peopleClean = new ArrayList<Person>(peopleFlushed.size());
+        for (var index = 0; index < peopleFlushed.size(); index++) {
+            if (scores.get(index) == null) {
+                peopleClean.add(peopleFlushed.get(index));
+            }
+        }
+        if (!peopleClean.isEmpty()) {
+            personCacheScripts.expireFlushed(peopleClean);
+        }
+    }
+
+    private double getOldestAge() {
+        final var queuedAts = oldestQueuedAts;
+        var oldestQueuedAt = Long.MAX_VALUE;
+        for (var partition = 0; partition < queuedAts.length(); partition++) {
+            final var queuedAt = queuedAts.get(partition);
+            if (queuedAt != 0) {
+                oldestQueuedAt = Math.min(oldestQueuedAt, queuedAt);
+            }
+        }
+        if (oldestQueuedAt == Long.MAX_VALUE) {
+            return 0;
+        }
+
+        return (System.currentTimeMillis() - oldestQueuedAt) / 1000.0;
+    }
+
+    private static int concurrencyOf(PersonServiceCacheProperties cacheProperties, DataSource dataSource) {
+        var concurrency = cacheProperties.getWriteBackConcurrency() > 0
+                ? cacheProperties.getWriteBackConcurrency()
+                : cacheProperties.getWriteBackPartitions();
+        if (dataSource instanceof HikariDataSource hikariDataSource) {
+            concurrency = Math.min(concurrency, hikariDataSource.getMaximumPoolSize());
         }
+        return Math.max(1, Math.min(concurrency, cacheProperties.getWriteBackPartitions()));
     }
 }
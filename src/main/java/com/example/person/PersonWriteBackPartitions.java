@@ -0,0 +1,86 @@
+package com.example.person;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+ * Records on Redis the highest amount of write back partitions used by any node, so lowering the setting does not
+ * strand the people queued or in flight on the partitions above it. Those partitions are visited until drained, and
+ * then released.
+ */
+@Component
+public class PersonWriteBackPartitions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonWriteBackPartitions.class);
+
+    private static final RedisScript<Long> PARTITIONS_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/person_write_back_partitions.lua"), Long.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheKeys personCacheKeys;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private volatile int amountOfPartitions;
+
+    public PersonWriteBackPartitions(PersonServiceCacheProperties cacheProperties,
+                                     PersonCacheKeys personCacheKeys,
+                                     StringRedisTemplate stringRedisTemplate) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheKeys = personCacheKeys;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.amountOfPartitions = cacheProperties.getWriteBackPartitions();
+    }
+
+    // As of the last time partitions were registered or released, never less than the configured amount
+    public int getAmountOfPartitions() {
+        return amountOfPartitions;
+    }
+
+    public int register() {
+        return record(0);
+    }
+
+    // Partitions above the configured amount are released once nothing is queued or claimed on any of them
+    public void releaseDrained() {
+        final var amountOfPartitionsRegistered = amountOfPartitions;
+        final var amountOfPartitionsConfigured = cacheProperties.getWriteBackPartitions();
+        if (amountOfPartitionsRegistered <= amountOfPartitionsConfigured) {
+            return;
+        }
+
+        for (var partition = amountOfPartitionsConfigured; partition < amountOfPartitionsRegistered; partition++) {
+            if (sizeOf(personCacheKeys.writeBackKey(partition)) > 0 || sizeOf(personCacheKeys.claimsKey(partition)) > 0) {
+                return;
+            }
+        }
+
+        if (record(amountOfPartitionsRegistered) == amountOfPartitionsConfigured) {
+            LOGGER.info("Write back partitions {} to {} drained and released",
+                    amountOfPartitionsConfigured, amountOfPartitionsRegistered - 1);
+        }
+    }
+
+    private int record(int amountOfPartitionsDrained) {
+        final var amountOfPartitionsRecorded = stringRedisTemplate.execute(
+                PARTITIONS_SCRIPT,
+                List.of(personCacheKeys.partitionsKey()),
+                String.valueOf(cacheProperties.getWriteBackPartitions()),
+                String.valueOf(amountOfPartitionsDrained)
+        );
+
+        amountOfPartitions = Math.max(cacheProperties.getWriteBackPartitions(),
+                amountOfPartitionsRecorded == null ? 0 : amountOfPartitionsRecorded.intValue());
+        return amountOfPartitions;
+    }
+
+    private long sizeOf(String key) {
+        final var size = stringRedisTemplate.opsForZSet().zCard(key);
+        return size == null ? 0 : size;
+    }
+}
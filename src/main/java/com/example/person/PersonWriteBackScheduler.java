@@ -0,0 +1,108 @@
+package com.example.person;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class PersonWriteBackScheduler implements SchedulingConfigurer, Trigger, ApplicationListener<ContextClosedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonWriteBackScheduler.class);
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonWriteBackJob personWriteBackJob;
+    private final TaskScheduler taskScheduler;
+
+    private final AtomicLong queuedSinceLastRun = new AtomicLong();
+    private final AtomicBoolean writeBackRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Duration idleDelay;
+
+    public PersonWriteBackScheduler(PersonServiceCacheProperties cacheProperties,
+                                    PersonWriteBackJob personWriteBackJob,
+                                    TaskScheduler taskScheduler) {
+        this.cacheProperties = cacheProperties;
+        this.personWriteBackJob = personWriteBackJob;
+        this.taskScheduler = taskScheduler;
+        this.idleDelay = Duration.ofMillis(cacheProperties.getWriteBackRate());
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.addTriggerTask(this::writeBack, this);
+    }
+
+    public void queued(long amountOfPeople) {
+        final var amountOfPeopleQueued = queuedSinceLastRun.addAndGet(amountOfPeople);
+        if (amountOfPeopleQueued >= cacheProperties.getWriteBackHighWaterMark()
+            && writeBackRequested.compareAndSet(false, true)) {
+            LOGGER.debug("Write back requested after {} people were queued", amountOfPeopleQueued);
+            taskScheduler.schedule(this::writeBack, Instant.now());
+        }
+    }
+
+    @Override
+    public Instant nextExecution(TriggerContext triggerContext) {
+        final var lastCompletion = triggerContext.lastCompletion();
+        if (lastCompletion == null) {
+            return triggerContext.getClock().instant();
+        }
+
+        return lastCompletion.plus(nextDelay(personWriteBackJob.getBacklog()));
+    }
+
+    // Runs again right away while the backlog is above the high-water mark, at the regular rate while there is
+    // something left, and backs off exponentially while idle, never waiting longer than the maximum staleness
+    private Duration nextDelay(long backlog) {
+        final var rate = Duration.ofMillis(cacheProperties.getWriteBackRate());
+
+        if (backlog >= cacheProperties.getWriteBackHighWaterMark()) {
+            idleDelay = rate;
+            return Duration.ZERO;
+        }
+        if (backlog > 0) {
+            idleDelay = rate;
+            return rate;
+        }
+
+        final var maxStaleness = cacheProperties.getWriteBackMaxStaleness();
+        if (idleDelay.compareTo(maxStaleness) >= 0) {
+            idleDelay = maxStaleness;
+            return maxStaleness;
+        }
+
+        final var delay = idleDelay;
+        final var nextIdleDelay = delay.multipliedBy(2);
+        idleDelay = nextIdleDelay.compareTo(maxStaleness) > 0 ? maxStaleness : nextIdleDelay;
+
+        return delay;
+    }
+
+    // The virtual thread scheduler runs delayed tasks on shutdown, after Redis connections are already being closed
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        closed.set(true);
+    }
+
+    private void writeBack() {
+        if (closed.get()) {
+            return;
+        }
+
+        queuedSinceLastRun.set(0);
+        writeBackRequested.set(false);
+        personWriteBackJob.writeBack();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.person;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PersonWriteBuffer {
+
+    void write(List<Person> people);
+
+    Optional<Person> get(UUID personId);
+
+    // Called once a person is changed on Redis, which is where it is read from then on
+    void discard(UUID personId);
+}
@@ -0,0 +1,216 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Groups the people created by many requests into a single pipeline, flushed once enough of them are waiting or the
+// flush interval elapses. People are found here until flushed, so whoever created them can read them right away
+public class PersonWriteBufferDefault implements PersonWriteBuffer, SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersonWriteBufferDefault.class);
+
+    // Wakes the flusher up on shutdown, instead of interrupting it in the middle of a pipeline
+    private static final PendingWrite WAKE_UP = new PendingWrite(List.of(), 0, CompletableFuture.completedFuture(null));
+
+    private final PersonServiceCacheProperties cacheProperties;
+    private final PersonCacheWriter personCacheWriter;
+
+    private final BlockingQueue<PendingWrite> pendingWrites = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Map<UUID, Person> pendingPeople = new ConcurrentHashMap<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Counter droppedCounter;
+
+    public PersonWriteBufferDefault(PersonServiceCacheProperties cacheProperties,
+                                    PersonCacheWriter personCacheWriter,
+                                    MeterRegistry meterRegistry) {
+        this.cacheProperties = cacheProperties;
+        this.personCacheWriter = personCacheWriter;
+        this.capacity = new Semaphore(cacheProperties.getWriteBufferCapacity(), true);
+        this.batchSizeSummary = DistributionSummary.builder("person.write_buffer.batch_size")
+                .description("People written to Redis by each flush of the write buffer")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("person.write_buffer.dropped")
+                .description("People acknowledged by the write buffer that could not be written to Redis")
+                .register(meterRegistry);
+        meterRegistry.gauge("person.write_buffer.pending", pendingPeople, Map::size);
+    }
+
+    @Override
+    public void write(List<Person> people) {
+        if (!running) {
+            throw new IllegalStateException("Write buffer is shut down");
+        }
+
+        // Blocks while the buffer is full, slowing callers down to the pace Redis takes the writes. The capacity counts
+        // people, fairly, so a batch larger than all of it waits for the buffer to empty instead of forever
+        final var permits = Math.min(people.size(), cacheProperties.getWriteBufferCapacity());
+        try {
+            capacity.acquire(permits);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while buffering people", exception);
+        }
+
+        final var pendingWrite = new PendingWrite(people, permits, new CompletableFuture<>());
+        people.forEach(person -> pendingPeople.put(person.getId(), person));
+        pendingWrites.add(pendingWrite);
+
+        // The flusher may have drained the buffer and stopped meanwhile, unless it took this write already
+        if (!running && pendingWrites.remove(pendingWrite)) {
+            people.forEach(person -> pendingPeople.remove(person.getId(), person));
+            capacity.release(permits);
+            throw new IllegalStateException("Write buffer is shut down");
+        }
+
+        if (cacheProperties.getWriteBufferDurability() == PersonServiceCacheProperties.WriteBufferDurability.REDIS) {
+            try {
+                pendingWrite.written().join();
+            } catch (CompletionException exception) {
+                if (exception.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw exception;
+            }
+        }
+    }
+
+    @Override
+    public Optional<Person> get(UUID personId) {
+        return Optional.ofNullable(pendingPeople.get(personId));
+    }
+
+    // The change is cached on Redis, and flushing the person only sets it there if absent, so the change is kept
+    @Override
+    public void discard(UUID personId) {
+        pendingPeople.remove(personId);
+    }
+
+    // Started once the Redis connection factory is, so the first flush can reach Redis
+    @Override
+    public void start() {
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("person-write-buffer")
+                .daemon()
+                .start(this::flushContinuously);
+    }
+
+    // Stops taking writes and waits for those already acknowledged to reach Redis
+    @Override
+    public void stop() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        pendingWrites.offer(WAKE_UP);
+
+        try {
+            if (!flusher.join(cacheProperties.getWriteBufferShutdownTimeout())) {
+                LOGGER.error("Write buffer not drained within {}, {} people acknowledged may be lost",
+                        cacheProperties.getWriteBufferShutdownTimeout(), pendingPeople.size());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Started right after the Redis connection factory, whose phase is 0, and stopped right before it, after the web
+    // server, so no request is refused and the people left can still be written
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+
+    private void flushContinuously() {
+        final var maxBatchSize = cacheProperties.getWriteBufferMaxBatchSize();
+        final var flushInterval = cacheProperties.getWriteBufferFlushInterval().toNanos();
+        final var batch = new ArrayList<PendingWrite>();
+
+        while (running || !pendingWrites.isEmpty()) {
+            try {
+                final var first = running ? pendingWrites.poll(flushInterval, TimeUnit.NANOSECONDS) : pendingWrites.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                var amountOfPeople = first.people().size();
+                final var deadline = System.nanoTime() + flushInterval;
+                while (amountOfPeople < maxBatchSize) {
+                    final var remaining = deadline - System.nanoTime();
+                    final var next = running && remaining > 0
+                            ? pendingWrites.poll(remaining, TimeUnit.NANOSECONDS)
+                            : pendingWrites.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    amountOfPeople += next.people().size();
+                }
+            } catch (InterruptedException exception) {
+                // Nothing interrupts the flusher on purpose, so it is taken as a shutdown and the queue is drained
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        final var people = batch.stream()
+                .flatMap(pendingWrite -> pendingWrite.people().stream())
+                .toList();
+        final var permits = batch.stream().mapToInt(PendingWrite::permits).sum();
+        if (people.isEmpty()) {
+            capacity.release(permits);
+            return;
+        }
+
+        try {
+            personCacheWriter.write(people);
+            batch.forEach(pendingWrite -> pendingWrite.written().complete(null));
+            batchSizeSummary.record(people.size());
+        } catch (RuntimeException exception) {
+            batch.forEach(pendingWrite -> pendingWrite.written().completeExceptionally(exception));
+            if (cacheProperties.getWriteBufferDurability() == PersonServiceCacheProperties.WriteBufferDurability.BUFFER) {
+                droppedCounter.increment(people.size());
+                LOGGER.error("Dropped {} people already acknowledged by the write buffer", people.size(), exception);
+            }
+        } finally {
+            people.forEach(person -> pendingPeople.remove(person.getId(), person));
+            capacity.release(permits);
+        }
+    }
+
+    private record PendingWrite(List<Person> people, int permits, CompletableFuture<Void> written) {
+    }
+}
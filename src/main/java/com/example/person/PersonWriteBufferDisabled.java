@@ -0,0 +1,28 @@
+package com.example.person;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public class PersonWriteBufferDisabled implements PersonWriteBuffer {
+
+    private final PersonCacheWriter personCacheWriter;
+
+    public PersonWriteBufferDisabled(PersonCacheWriter personCacheWriter) {
+        this.personCacheWriter = personCacheWriter;
+    }
+
+    @Override
+    public void write(List<Person> people) {
+        personCacheWriter.write(people);
+    }
+
+    @Override
+    public Optional<Person> get(UUID personId) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void discard(UUID personId) {
+    }
+}
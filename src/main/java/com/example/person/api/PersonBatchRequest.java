@@ -0,0 +1,22 @@
+package com.example.person.api;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public final class PersonBatchRequest {
+
+    @NotEmpty(message = "People are required")
+    @Size(max = PersonController.MAXIMUM_BATCH_SIZE, message = "At most 1000 people can be created at once")
+    private List<@Valid PersonRequest> people;
+}
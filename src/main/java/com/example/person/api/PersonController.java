@@ -1,32 +1,61 @@
 package com.example.person.api;
 
+import com.example.person.Person;
+import com.example.person.PersonBackpressure;
+import com.example.person.PersonBackpressureException;
 import com.example.person.PersonNotFoundException;
 import com.example.person.PersonService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 
 @ControllerAdvice
 @RestController
 @RequestMapping("/people")
+@Profile("!reactive")
 public class PersonController {
 
+    static final int MAXIMUM_BATCH_SIZE = 1000;
+    static final int STREAMING_CHUNK_SIZE = 100;
+
     private final PersonService personService;
+    private final PersonBackpressure personBackpressure;
+    private final ObjectMapper objectMapper;
 
-    public PersonController(PersonService personService) {
+    public PersonController(PersonService personService,
+                            PersonBackpressure personBackpressure,
+                            ObjectMapper objectMapper) {
         this.personService = personService;
+        this.personBackpressure = personBackpressure;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -44,18 +73,101 @@ public class PersonController {
                 .build();
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<StreamingResponseBody> createPeople(@Valid @RequestBody PersonBatchRequest request) {
+        final var people = request.getPeople()
+                .stream()
+                .map(personRequest -> {
+                    final var person = new Person();
+                    person.setName(personRequest.getName());
+                    person.setAge(personRequest.getAge());
+                    return person;
+                })
+                .toList();
+
+        // Admitted as a whole before anything is streamed, so a batch is either rejected or created entirely
+        final var admission = personBackpressure.admit(people.size());
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> writePeople(outputStream, people,
+                        chunk -> personService.createAll(chunk, admission)));
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> findPeople(
+            @RequestParam("id")
+            @NotEmpty(message = "Person IDs are required")
+            @Size(max = MAXIMUM_BATCH_SIZE, message = "At most 1000 people can be retrieved at once")
+            List<UUID> personIds) {
+        return ResponseEntity.status(HttpStatusCode.valueOf(200))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(outputStream -> writePeople(outputStream, personIds, personService::findAll));
+    }
+
     @GetMapping("/{personId}")
     public ResponseEntity<PersonResponse> findOnePerson(@PathVariable UUID personId) {
         final var person = personService.findOne(personId);
 
-        final var personResponse = PersonResponse.builder()
+        final var personResponse = toResponse(person);
+
+        return ResponseEntity.status(HttpStatusCode.valueOf(200))
+                .body(personResponse);
+    }
+
+    @PutMapping("/{personId}")
+    public ResponseEntity<PersonResponse> updatePerson(@PathVariable UUID personId,
+                                                       @Valid @RequestBody PersonRequest request) {
+        final var person = personService.update(
+                personId,
+                request.getName(),
+                request.getAge()
+        );
+
+        final var personResponse = toResponse(person);
+
+        return ResponseEntity.status(HttpStatusCode.valueOf(200))
+                .body(personResponse);
+    }
+
+    @DeleteMapping("/{personId}")
+    public ResponseEntity<Void> deletePerson(@PathVariable UUID personId) {
+        personService.delete(personId);
+
+        return ResponseEntity.noContent()
+                .build();
+    }
+
+    // Handles the batch in chunks, writing each chunk out before the next one is processed. Nothing is written until
+    // the first chunk is processed, so a batch failing right away still gets an error response
+    private <T> void writePeople(OutputStream outputStream,
+                                 List<T> items,
+                                 Function<List<T>, List<Person>> processChunk) throws IOException {
+        final var firstChunk = processChunk.apply(items.subList(0, Math.min(STREAMING_CHUNK_SIZE, items.size())));
+        try (final var generator = objectMapper.createGenerator(outputStream)) {
+            generator.writeStartArray();
+            writeChunk(generator, firstChunk);
+            for (var start = STREAMING_CHUNK_SIZE; start < items.size(); start += STREAMING_CHUNK_SIZE) {
+                final var chunk = items.subList(start, Math.min(start + STREAMING_CHUNK_SIZE, items.size()));
+                writeChunk(generator, processChunk.apply(chunk));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private void writeChunk(JsonGenerator generator, List<Person> people) throws IOException {
+        for (final var person : people) {
+            objectMapper.writeValue(generator, toResponse(person));
+        }
+        generator.flush();
+    }
+
+    static PersonResponse toResponse(Person person) {
+        return PersonResponse.builder()
                 .id(person.getId())
                 .name(person.getName())
                 .age(person.getAge())
                 .build();
-
-        return ResponseEntity.status(HttpStatusCode.valueOf(200))
-                .body(personResponse);
     }
 
     @ExceptionHandler(PersonNotFoundException.class)
@@ -67,4 +179,26 @@ public class PersonController {
         return ResponseEntity.status(responseBody.getStatus())
                 .body(responseBody);
     }
+
+    @ExceptionHandler(PersonBackpressureException.class)
+    public ResponseEntity<ProblemDetail> personBackpressureException(PersonBackpressureException exception) {
+        final var responseBody = backpressureProblem();
+
+        return ResponseEntity.status(responseBody.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, retryAfter(exception))
+                .body(responseBody);
+    }
+
+    static ProblemDetail backpressureProblem() {
+        final var responseBody = ProblemDetail.forStatus(429);
+        responseBody.setTitle("Too many people waiting for write back");
+        responseBody.setDetail("People cannot be created or changed until the database catches up");
+        return responseBody;
+    }
+
+    // Whole seconds, rounded up so clients never retry before the backlog had a chance to be sampled again
+    static String retryAfter(PersonBackpressureException exception) {
+        final var retryAfterMillis = exception.getRetryAfter().toMillis();
+        return String.valueOf(Math.max(1, (retryAfterMillis + 999) / 1000));
+    }
 }
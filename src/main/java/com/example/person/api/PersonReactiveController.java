@@ -0,0 +1,127 @@
+package com.example.person.api;
+
+import com.example.person.Person;
+import com.example.person.PersonBackpressure;
+import com.example.person.PersonBackpressureException;
+import com.example.person.PersonNotFoundException;
+import com.example.person.PersonReactiveService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+@ControllerAdvice
+@RestController
+@RequestMapping("/people")
+@Profile("reactive")
+public class PersonReactiveController {
+
+    private final PersonReactiveService personReactiveService;
+    private final PersonBackpressure personBackpressure;
+
+    public PersonReactiveController(PersonReactiveService personReactiveService, PersonBackpressure personBackpressure) {
+        this.personReactiveService = personReactiveService;
+        this.personBackpressure = personBackpressure;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Void>> createPerson(@Valid @RequestBody PersonRequest request,
+                                                   UriComponentsBuilder uriComponentsBuilder) {
+        return personReactiveService.create(request.getName(), request.getAge())
+                .map(person -> ResponseEntity.created(uriComponentsBuilder.path("/people/{id}").build(person.getId()))
+                        .build());
+    }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<PersonResponse> createPeople(@Valid @RequestBody PersonBatchRequest request) {
+        final var people = request.getPeople()
+                .stream()
+                .map(personRequest -> {
+                    final var person = new Person();
+                    person.setName(personRequest.getName());
+                    person.setAge(personRequest.getAge());
+                    return person;
+                })
+                .toList();
+
+        // Admitted as a whole before the first chunk, then chunks are processed one after the other, each written out
+        // as soon as it is ready
+        return personBackpressure.admitReactive(people.size())
+                .flatMapMany(admission -> Flux.fromIterable(people)
+                        .buffer(PersonController.STREAMING_CHUNK_SIZE)
+                        .concatMap(chunk -> personReactiveService.createAll(chunk, admission)))
+                .map(PersonController::toResponse);
+    }
+
+    @GetMapping
+    public Flux<PersonResponse> findPeople(
+            @RequestParam("id")
+            @NotEmpty(message = "Person IDs are required")
+            @Size(max = PersonController.MAXIMUM_BATCH_SIZE, message = "At most 1000 people can be retrieved at once")
+            List<UUID> personIds) {
+        return Flux.fromIterable(personIds)
+                .buffer(PersonController.STREAMING_CHUNK_SIZE)
+                .concatMap(personReactiveService::findAll)
+                .map(PersonController::toResponse);
+    }
+
+    @GetMapping("/{personId}")
+    public Mono<PersonResponse> findOnePerson(@PathVariable UUID personId) {
+        return personReactiveService.findOne(personId)
+                .map(PersonController::toResponse);
+    }
+
+    @PutMapping("/{personId}")
+    public Mono<PersonResponse> updatePerson(@PathVariable UUID personId, @Valid @RequestBody PersonRequest request) {
+        return personReactiveService.update(personId, request.getName(), request.getAge())
+                .map(PersonController::toResponse);
+    }
+
+    @DeleteMapping("/{personId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deletePerson(@PathVariable UUID personId) {
+        return personReactiveService.delete(personId);
+    }
+
+    @ExceptionHandler(PersonNotFoundException.class)
+    public ResponseEntity<ProblemDetail> personNotFoundException(PersonNotFoundException exception) {
+        final var responseBody = ProblemDetail.forStatus(404);
+        responseBody.setTitle("Person not found by ID");
+        responseBody.setDetail("No person with ID " + exception.getPersonId() + " exists");
+
+        return ResponseEntity.status(responseBody.getStatus())
+                .body(responseBody);
+    }
+
+    @ExceptionHandler(PersonBackpressureException.class)
+    public ResponseEntity<ProblemDetail> personBackpressureException(PersonBackpressureException exception) {
+        final var responseBody = PersonController.backpressureProblem();
+
+        return ResponseEntity.status(responseBody.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, PersonController.retryAfter(exception))
+                .body(responseBody);
+    }
+}
@@ -0,0 +1,4 @@
+ALTER TABLE PERSON
+    ADD COLUMN PERSON_UPDATED_AT TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+CREATE INDEX PERSON_UPDATED_AT_IDX ON PERSON (PERSON_UPDATED_AT DESC, PERSON_ID DESC);
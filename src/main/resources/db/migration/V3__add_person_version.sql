@@ -0,0 +1,2 @@
+ALTER TABLE PERSON
+    ADD COLUMN PERSON_VERSION BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,4 @@
+ALTER TABLE PERSON
+    ADD COLUMN PERSON_DELETED BOOLEAN NOT NULL DEFAULT FALSE,
+    ALTER COLUMN PERSON_NAME DROP NOT NULL,
+    ALTER COLUMN PERSON_AGE DROP NOT NULL;
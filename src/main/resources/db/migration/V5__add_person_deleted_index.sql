@@ -0,0 +1 @@
+CREATE INDEX PERSON_DELETED_IDX ON PERSON (PERSON_UPDATED_AT) WHERE PERSON_DELETED = TRUE;
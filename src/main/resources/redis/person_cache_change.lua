@@ -0,0 +1,16 @@
+-- KEYS[1] person key, KEYS[2] write back sorted set, left out on Redis Cluster where it is on another slot
+-- ARGV[1] value the change was made from, empty if the person was not cached, ARGV[2] value changed, ARGV[3] person ID,
+-- ARGV[4] timestamp in milliseconds the person is queued at
+-- Applied only if the person was not changed meanwhile, otherwise the caller reads it again and retries
+
+if (redis.call('GET', KEYS[1]) or '') ~= ARGV[1] then
+    return 0
+end
+
+-- Dirty until written back, so without a time to live, and queued unless it already is
+redis.call('SET', KEYS[1], ARGV[2])
+if #KEYS > 1 then
+    redis.call('ZADD', KEYS[2], 'NX', ARGV[4], ARGV[3])
+end
+
+return 1
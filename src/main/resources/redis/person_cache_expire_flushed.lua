@@ -0,0 +1,13 @@
+-- KEYS[1..n] keys of the people flushed
+-- ARGV[1] time to live in milliseconds, then the value flushed of each person, in the same order as KEYS
+-- A person changed since it was flushed is still dirty, so it is left without a time to live
+
+local expired = 0
+for index = 1, #KEYS do
+    if redis.call('GET', KEYS[index]) == ARGV[index + 1] then
+        redis.call('PEXPIRE', KEYS[index], ARGV[1])
+        expired = expired + 1
+    end
+end
+
+return expired
@@ -0,0 +1,14 @@
+-- KEYS people keys
+-- ARGV[1] time to live in milliseconds given back to the clean people read, or 0 to leave it unchanged
+-- People without a time to live are waiting for write back, so they are never given one here
+
+local people = {}
+for index, personKey in ipairs(KEYS) do
+    local person = redis.call('GET', personKey)
+    if person and tonumber(ARGV[1]) > 0 and redis.call('PTTL', personKey) > 0 then
+        redis.call('PEXPIRE', personKey, ARGV[1])
+    end
+    people[index] = person
+end
+
+return people
@@ -0,0 +1,9 @@
+-- KEYS[1] load lock key
+-- ARGV[1] token the lock was taken with
+-- The lock may have expired and been taken by another node meanwhile, which must keep it
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+
+return 0
@@ -0,0 +1,6 @@
+-- KEYS[1] in-flight set of this node, KEYS[2] claims sorted set
+
+redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], KEYS[1])
+
+return 1
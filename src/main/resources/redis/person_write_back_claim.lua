@@ -0,0 +1,24 @@
+-- KEYS[1] write back sorted set, KEYS[2] in-flight sorted set of this node, KEYS[3] claims sorted set
+-- ARGV[1] batch size, ARGV[2] claim timestamp in milliseconds
+-- Both write back and in-flight sets are scored by the time each person was first queued
+
+-- A batch left behind by a failed run of this node is retried before new work is claimed
+local pending = redis.call('ZRANGE', KEYS[2], 0, -1)
+if #pending > 0 then
+    redis.call('ZADD', KEYS[3], ARGV[2], KEYS[2])
+    return pending
+end
+
+local popped = redis.call('ZPOPMIN', KEYS[1], ARGV[1])
+if #popped == 0 then
+    return popped
+end
+
+local members = {}
+for index = 1, #popped, 2 do
+    members[#members + 1] = popped[index]
+    redis.call('ZADD', KEYS[2], popped[index + 1], popped[index])
+end
+redis.call('ZADD', KEYS[3], ARGV[2], KEYS[2])
+
+return members
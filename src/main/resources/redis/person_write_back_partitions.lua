@@ -0,0 +1,18 @@
+-- KEYS[1] highest amount of write back partitions in use by any node
+-- ARGV[1] amount of partitions configured on this node
+-- ARGV[2] amount of partitions found drained above the configured ones, or 0 to only record the configured amount
+-- Drained partitions are released only if no node recorded a different amount meanwhile
+
+local recorded = tonumber(redis.call('GET', KEYS[1])) or 0
+local configured = tonumber(ARGV[1])
+
+if tonumber(ARGV[2]) > 0 and recorded == tonumber(ARGV[2]) then
+    redis.call('SET', KEYS[1], configured)
+    return configured
+end
+if configured > recorded then
+    redis.call('SET', KEYS[1], configured)
+    return configured
+end
+
+return recorded
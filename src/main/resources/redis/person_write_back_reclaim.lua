@@ -0,0 +1,16 @@
+-- KEYS[1] write back sorted set, KEYS[2] claims sorted set, KEYS[3] in-flight sorted set found abandoned
+-- ARGV[1] claims older than this timestamp in milliseconds are considered abandoned
+-- The claim is checked again, since its node may have acknowledged or renewed it after it was found abandoned
+
+local claimedAt = redis.call('ZSCORE', KEYS[2], KEYS[3])
+if not claimedAt or tonumber(claimedAt) > tonumber(ARGV[1]) then
+    return 0
+end
+
+local reclaimed = redis.call('ZCARD', KEYS[3])
+-- Keeps the earliest time each person was queued, whether it was queued again meanwhile or not
+redis.call('ZUNIONSTORE', KEYS[1], 2, KEYS[1], KEYS[3], 'AGGREGATE', 'MIN')
+redis.call('DEL', KEYS[3])
+redis.call('ZREM', KEYS[2], KEYS[3])
+
+return reclaimed
@@ -1,10 +1,14 @@
 package com.example;
 
 import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
 import com.example.person.PersonRepository;
 import com.example.person.PersonServiceCacheProperties;
+import com.example.person.PersonWriteBackJob;
+import com.example.person.api.PersonBatchRequest;
 import com.example.person.api.PersonRequest;
 import com.example.person.api.PersonResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.awaitility.Awaitility;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.MethodOrderer;
@@ -26,6 +30,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -38,10 +43,15 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Import(ApplicationTest.TestConfig.class)
@@ -59,12 +69,27 @@ class ApplicationTest {
     @Autowired
     private PersonServiceCacheProperties cacheProperties;
 
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
     @Autowired
     private PersonRepository personRepository;
 
     @Autowired
     private RedisTemplate<String, Person> personRedisTemplate;
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private PersonWriteBackJob personWriteBackJob;
+
+    @Autowired
+    private RedisConnectionDetails redisConnectionDetails;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @RepeatedTest(10)
     @Order(1)
     void creatingPerson() {
@@ -114,10 +139,223 @@ class ApplicationTest {
                 .untilAsserted(() -> assertEquals(10, personRepository.count()));
 
         // Checking all people persisted were removed from the cache database
-        final var cacheEntries = personRedisTemplate.boundSetOps(cacheProperties.getWriteBackKey());
         Awaitility.await()
                 .atMost(twoSeconds)
-                .untilAsserted(() -> assertEquals(0, cacheEntries.size()));
+                .untilAsserted(() -> {
+                    for (var partition = 0; partition < cacheProperties.getWriteBackPartitions(); partition++) {
+                        assertEquals(0, stringRedisTemplate.boundZSetOps(personCacheKeys.writeBackKey(partition)).size());
+                    }
+                });
+    }
+
+    @Test
+    @Order(4)
+    void writeBackJobReclaimedBatchAbandonedByAnotherNode() {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("Mary Jane");
+        person.setAge(32);
+
+        // Simulating a node that claimed a batch and died before acknowledging it
+        final var partition = personCacheKeys.partitionOf(person.getId());
+        final var inFlightKey = personCacheKeys.writeBackKey(partition) + ":in_flight:dead-node";
+        personRedisTemplate.boundValueOps(personCacheKeys.personKey(person.getId())).set(person);
+        stringRedisTemplate.boundZSetOps(inFlightKey).add(person.getId().toString(), System.currentTimeMillis());
+        stringRedisTemplate.boundZSetOps(personCacheKeys.claimsKey(partition)).add(inFlightKey, 0);
+
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> assertTrue(personRepository.existsById(person.getId())));
+        assertEquals(Boolean.FALSE, stringRedisTemplate.hasKey(inFlightKey));
+    }
+
+    @Test
+    void writeBackJobDrainedPartitionLeftOverByNodeWithMorePartitions() {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("Gwen Stacy");
+        person.setAge(19);
+
+        // Simulating a node configured with twice the partitions that queued a person on its last one
+        final var partition = cacheProperties.getWriteBackPartitions() * 2 - 1;
+        stringRedisTemplate.opsForValue().set(personCacheKeys.partitionsKey(), String.valueOf(partition + 1));
+        personRedisTemplate.boundValueOps(personCacheKeys.personKey(person.getId())).set(person);
+        stringRedisTemplate.boundZSetOps(personCacheKeys.writeBackKey(partition))
+                .add(person.getId().toString(), System.currentTimeMillis());
+
+        // Run here, since the scheduler may have backed off while there was nothing to write
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> {
+                    personWriteBackJob.writeBack();
+                    assertTrue(personRepository.existsById(person.getId()));
+                    assertEquals(String.valueOf(cacheProperties.getWriteBackPartitions()),
+                            stringRedisTemplate.opsForValue().get(personCacheKeys.partitionsKey()));
+                });
+    }
+
+    @Test
+    void writeBackJobFlushedPersonQueuedOnPartitionsOfTwoPartitionCounts() {
+        // Simulating a node configured with twice the partitions, which maps the person to another partition
+        final var morePartitionsProperties = new PersonServiceCacheProperties();
+        morePartitionsProperties.setWriteBackKey(cacheProperties.getWriteBackKey());
+        morePartitionsProperties.setWriteBackPartitions(cacheProperties.getWriteBackPartitions() * 2);
+        final var morePartitionsKeys = new PersonCacheKeys(morePartitionsProperties, redisConnectionDetails);
+        var personId = UUID.randomUUID();
+        while (morePartitionsKeys.partitionOf(personId) == personCacheKeys.partitionOf(personId)) {
+            personId = UUID.randomUUID();
+        }
+
+        final var olderPerson = new Person();
+        olderPerson.setId(personId);
+        olderPerson.setName("Miles");
+        olderPerson.setAge(16);
+        olderPerson.setVersion(1);
+        final var newerPerson = new Person();
+        newerPerson.setId(personId);
+        newerPerson.setName("Miles Morales");
+        newerPerson.setAge(17);
+        newerPerson.setVersion(2);
+
+        stringRedisTemplate.opsForValue().set(personCacheKeys.partitionsKey(),
+                String.valueOf(morePartitionsProperties.getWriteBackPartitions()));
+        personRedisTemplate.boundValueOps(personCacheKeys.personKey(personId)).set(newerPerson);
+        final var writeBackKeys = List.of(personCacheKeys.writeBackKey(personId), morePartitionsKeys.writeBackKey(personId));
+        for (final var writeBackKey : writeBackKeys) {
+            stringRedisTemplate.boundZSetOps(writeBackKey).add(personId.toString(), System.currentTimeMillis());
+        }
+
+        final var personIdQueued = personId;
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> {
+                    personWriteBackJob.writeBack();
+                    assertEquals(newerPerson, personRepository.findById(personIdQueued).orElseThrow());
+                    for (final var writeBackKey : writeBackKeys) {
+                        assertEquals(0, stringRedisTemplate.boundZSetOps(writeBackKey).size());
+                    }
+                });
+
+        // Both partitions may be flushed at once, so the one that read the person before it changed can finish last
+        personRepository.upsertAll(List.of(olderPerson));
+        assertEquals(newerPerson, personRepository.findById(personId).orElseThrow());
+    }
+
+    @Test
+    @Order(5)
+    void findingPersonOnlyInTheDatabaseCachesItWithoutQueueingItForWriteBack() {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("Peter Parker");
+        person.setAge(18);
+        personRepository.save(person);
+
+        webTestClient.get()
+                .uri("/people/{personId}", person.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK);
+
+        final var personKey = personCacheKeys.personKey(person.getId());
+        assertEquals(Boolean.TRUE, stringRedisTemplate.hasKey(personKey));
+        assertTrue(stringRedisTemplate.getExpire(personKey) > 0);
+        assertNull(stringRedisTemplate.boundZSetOps(personCacheKeys.writeBackKey(person.getId()))
+                .score(person.getId().toString()));
+
+        // Only the people created through the API are changes to write back
+        assertEquals(10, meterRegistry.get("person.cache.mutations").counter().count());
+        assertEquals(1, meterRegistry.get("person.cache.fills").counter().count());
+    }
+
+    @Test
+    @Order(6)
+    void creatingAndFindingPeopleInBatch() {
+        final var batchRequest = PersonBatchRequest.builder()
+                .people(List.of(
+                        PersonRequest.builder().name("Bruce Wayne").age(35).build(),
+                        PersonRequest.builder().name("Clark Kent").age(33).build(),
+                        PersonRequest.builder().name("Diana Prince").age(30).build()
+                ))
+                .build();
+
+        final var peopleCreated = webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBodyList(PersonResponse.class)
+                .hasSize(3)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(peopleCreated);
+
+        final var randomPersonId = UUID.randomUUID();
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/people")
+                        .queryParam("id", peopleCreated.get(0).getId())
+                        .queryParam("id", randomPersonId)
+                        .queryParam("id", peopleCreated.get(2).getId())
+                        .queryParam("id", personId)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBodyList(PersonResponse.class)
+                .isEqualTo(List.of(peopleCreated.get(0), peopleCreated.get(2), findPersonResponse(personId)));
+    }
+
+    @Test
+    @Order(7)
+    void personExpiresOnlyAfterBeingWrittenBack() {
+        final var exchangeResult = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Wanda Maximoff").age(29).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty();
+        final var createdPersonId = getPersonIdFromLocationHeader(exchangeResult);
+        final var personKey = personCacheKeys.personKey(createdPersonId);
+
+        // Waiting for write back, so it must never expire nor be picked by a volatile eviction policy
+        assertEquals(-1, stringRedisTemplate.getExpire(personKey));
+
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> assertTrue(stringRedisTemplate.getExpire(personKey) > 0));
+        assertTrue(personRepository.existsById(createdPersonId));
+
+        // Reading it through the cache slides the time to live forward again
+        stringRedisTemplate.expire(personKey, Duration.ofSeconds(5));
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/people").queryParam("id", createdPersonId).build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK);
+        assertTrue(stringRedisTemplate.getExpire(personKey) > 5);
+    }
+
+    @Test
+    void creatingPeopleInEmptyBatch() {
+        webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonBatchRequest.builder().people(List.of()).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void exposingMetricsToPrometheus() {
+        webTestClient.get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(String.class)
+                .value(Matchers.containsString("person_write_back_backlog"))
+                .value(Matchers.containsString("person_write_back_oldest_age_seconds"))
+                .value(Matchers.containsString("person_cache_lookups_total"));
     }
 
     @Test
@@ -137,6 +375,161 @@ class ApplicationTest {
                 .jsonPath("$.instance").value(Matchers.equalTo("/people/" + randomPersonId), String.class);
     }
 
+    @Test
+    void findingUnknownPersonTwiceQueriesTheDatabaseOnce() {
+        final var randomPersonId = UUID.randomUUID();
+        final var notFoundCacheHits = meterRegistry.get("person.cache.lookups").tag("source", "not_found_cache").counter();
+        final var notFoundCacheHitsBefore = notFoundCacheHits.count();
+
+        for (var attempt = 0; attempt < 2; attempt++) {
+            webTestClient.get()
+                    .uri("/people/{personId}", randomPersonId)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+        }
+
+        assertTrue(stringRedisTemplate.getExpire(personCacheKeys.notFoundKey(randomPersonId)) > 0);
+        assertEquals(notFoundCacheHitsBefore + 1, notFoundCacheHits.count());
+    }
+
+    @Test
+    void findingPersonMissingOnCacheConcurrentlyQueriesTheDatabaseOnce() {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("Natasha Romanoff");
+        person.setAge(34);
+        personRepository.save(person);
+
+        final var databaseHits = meterRegistry.get("person.cache.lookups").tag("source", "database").counter();
+        final var databaseHitsBefore = databaseHits.count();
+
+        try (final var executor = Executors.newFixedThreadPool(20)) {
+            for (var attempt = 0; attempt < 20; attempt++) {
+                executor.submit(() -> webTestClient.get()
+                        .uri("/people/{personId}", person.getId())
+                        .accept(MediaType.APPLICATION_JSON)
+                        .exchange()
+                        .expectStatus().isEqualTo(HttpStatus.OK));
+            }
+        }
+
+        assertEquals(databaseHitsBefore + 1, databaseHits.count());
+    }
+
+    @Test
+    void updatingAndDeletingPersonAreWrittenBackToTheDatabase() {
+        final var exchangeResult = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Steve Rogers").age(100).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty();
+        final var createdPersonId = getPersonIdFromLocationHeader(exchangeResult);
+
+        webTestClient.put()
+                .uri("/people/{personId}", createdPersonId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Captain America").age(101).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(PersonResponse.class)
+                .isEqualTo(PersonResponse.builder().id(createdPersonId).name("Captain America").age(101).build());
+        assertEquals("Captain America", findPersonResponse(createdPersonId).getName());
+
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> {
+                    final var personPersisted = personRepository.findById(createdPersonId).orElseThrow();
+                    assertEquals("Captain America", personPersisted.getName());
+                    assertEquals(2, personPersisted.getVersion());
+                });
+
+        webTestClient.delete()
+                .uri("/people/{personId}", createdPersonId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NO_CONTENT);
+        webTestClient.get()
+                .uri("/people/{personId}", createdPersonId)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+
+        // The row is still there until the tombstone is written back
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> assertTrue(personRepository.findById(createdPersonId).isEmpty()));
+        webTestClient.delete()
+                .uri("/people/{personId}", createdPersonId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void writingBackOlderVersionKeepsNewerOneInTheDatabase() {
+        final var personId = UUID.randomUUID();
+        final var newerPerson = new Person();
+        newerPerson.setId(personId);
+        newerPerson.setName("Wanda Maximoff");
+        newerPerson.setAge(30);
+        newerPerson.setVersion(2);
+        final var olderPerson = new Person();
+        olderPerson.setId(personId);
+        olderPerson.setName("Wanda");
+        olderPerson.setAge(29);
+        olderPerson.setVersion(1);
+
+        personRepository.upsertAll(List.of(newerPerson));
+        personRepository.upsertAll(List.of(olderPerson));
+
+        assertEquals(newerPerson, personRepository.findById(personId).orElseThrow());
+    }
+
+    @Test
+    void writingBackOlderVersionAfterDeleteKeepsPersonDeleted() {
+        final var personId = UUID.randomUUID();
+        final var olderPerson = new Person();
+        olderPerson.setId(personId);
+        olderPerson.setName("Pietro Maximoff");
+        olderPerson.setAge(30);
+        olderPerson.setVersion(1);
+
+        // The delete is written back first, then a copy flushed late or reclaimed from a failed node arrives
+        personRepository.upsertAll(List.of(olderPerson.tombstone()));
+        personRepository.upsertAll(List.of(olderPerson));
+
+        assertFalse(personRepository.existsById(personId));
+        webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void purgingTombstonesOlderThanRetention() {
+        final var personIdDeleted = UUID.randomUUID();
+        final var olderPerson = new Person();
+        olderPerson.setId(personIdDeleted);
+        olderPerson.setName("Natasha Romanoff");
+        olderPerson.setAge(35);
+        olderPerson.setVersion(1);
+        final var personAlive = new Person();
+        personAlive.setId(UUID.randomUUID());
+        personAlive.setName("Clint Barton");
+        personAlive.setAge(41);
+        personAlive.setVersion(1);
+
+        personRepository.upsertAll(List.of(olderPerson.tombstone(), personAlive));
+        assertEquals(0, personRepository.purgeTombstones(Duration.ofDays(1), Integer.MAX_VALUE));
+        assertTrue(personRepository.purgeTombstones(Duration.ZERO, Integer.MAX_VALUE) > 0);
+
+        // Only the tombstone is gone, so nothing keeps an older copy from bringing the person back anymore
+        assertTrue(personRepository.existsById(personAlive.getId()));
+        personRepository.upsertAll(List.of(olderPerson));
+        assertTrue(personRepository.existsById(personIdDeleted));
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = "   ")
@@ -192,6 +585,16 @@ class ApplicationTest {
                 .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    private PersonResponse findPersonResponse(UUID personId) {
+        return webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectBody(PersonResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
     private UUID getPersonIdFromLocationHeader(EntityExchangeResult<Void> exchangeResult) {
         final var responseHeaders = exchangeResult.getResponseHeaders();
         final var location = responseHeaders.getLocation();
@@ -216,6 +619,7 @@ class ApplicationTest {
         @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
         GenericContainer<?> REDIS_CONTAINER() {
             return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
                     .withExposedPorts(6379);
         }
 
@@ -226,6 +630,7 @@ class ApplicationTest {
 
             properties.setWriteBackKey("person:write_back_test");
             properties.setWriteBackRate(1000 /* milliseconds */);
+            properties.setWriteBackMaxStaleness(Duration.ofMillis(properties.getWriteBackRate()));
 
             return properties;
         }
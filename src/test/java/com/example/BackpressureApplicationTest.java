@@ -0,0 +1,240 @@
+package com.example;
+
+import com.example.person.PersonServiceCacheProperties;
+import com.example.person.PersonWriteBackJob;
+import com.example.person.api.PersonBatchRequest;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(BackpressureApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class BackpressureApplicationTest {
+
+    private static final PersonRequest PERSON_REQUEST = PersonRequest.builder().name("John Smith").age(45).build();
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonWriteBackJob personWriteBackJob;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    // Each test starts with nobody waiting for write back
+    @BeforeEach
+    void writeBack() {
+        personWriteBackJob.writeBack();
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(1,
+                        meterRegistry.get("person.backpressure.mode").tag("mode", "write_back").gauge().value()));
+    }
+
+    @Test
+    void rejectingCreatesWhileTooManyPeopleWaitForWriteBack() {
+        for (var index = 0; index < 3; index++) {
+            createPerson().expectStatus().isEqualTo(HttpStatus.CREATED);
+        }
+
+        createPerson()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Too many people waiting for write back");
+        webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonBatchRequest.builder().people(List.of(PERSON_REQUEST)).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertEquals(1, meterRegistry.get("person.backpressure.mode").tag("mode", "reject").gauge().value());
+
+        // Creates are accepted again once the backlog sampled after the write back is below the high-water mark
+        personWriteBackJob.writeBack();
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> createPerson().expectStatus().isEqualTo(HttpStatus.CREATED));
+        assertEquals(1, meterRegistry.get("person.backpressure.mode").tag("mode", "write_back").gauge().value());
+    }
+
+    @Test
+    void acceptingCreatesAgainWhileSharedSchedulerIsBusyWithSlowWriteBack() throws InterruptedException {
+        for (var index = 0; index < 3; index++) {
+            createPerson().expectStatus().isEqualTo(HttpStatus.CREATED);
+        }
+        createPerson().expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+        final var writeBackFinished = new CountDownLatch(1);
+        taskScheduler.schedule(() -> {
+            try {
+                writeBackFinished.await();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }, Instant.now());
+        try {
+            // The backlog is drained meanwhile, and sampled even though the shared scheduler is still busy
+            personWriteBackJob.writeBack();
+            Awaitility.await()
+                    .atMost(Duration.ofSeconds(5))
+                    .untilAsserted(() -> createPerson().expectStatus().isEqualTo(HttpStatus.CREATED));
+        } finally {
+            writeBackFinished.countDown();
+        }
+    }
+
+    @Test
+    void creatingBatchLargerThanStreamingChunkIsAdmittedAsWhole() {
+        final var batchRequest = PersonBatchRequest.builder()
+                .people(Collections.nCopies(250, PERSON_REQUEST))
+                .build();
+
+        // Admitted while nobody waits for write back, so every chunk is created even though the first one alone
+        // goes over the high-water mark
+        webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBodyList(PersonResponse.class)
+                .hasSize(250);
+
+        // Rejected as a whole, before anything is streamed
+        webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Too many people waiting for write back");
+    }
+
+    @Test
+    void rejectingUpdatesAndDeletesWhileTooManyPeopleWaitForWriteBack() {
+        final var location = createPerson()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+        personWriteBackJob.writeBack();
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(0,
+                        meterRegistry.get("person.backpressure.backlog").gauge().value()));
+        for (var index = 0; index < 2; index++) {
+            createPerson().expectStatus().isEqualTo(HttpStatus.CREATED);
+        }
+
+        // Queues the person written back again, which takes the backlog to the high-water mark
+        updatePerson(location).expectStatus().isEqualTo(HttpStatus.OK);
+
+        updatePerson(location)
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Too many people waiting for write back");
+        webTestClient.delete()
+                .uri(location)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertEquals(1, meterRegistry.get("person.backpressure.mode").tag("mode", "reject").gauge().value());
+
+        personWriteBackJob.writeBack();
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> updatePerson(location).expectStatus().isEqualTo(HttpStatus.OK));
+    }
+
+    private WebTestClient.ResponseSpec updatePerson(URI location) {
+        return webTestClient.put()
+                .uri(location)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("John Doe").age(46).build()))
+                .exchange();
+    }
+
+    private WebTestClient.ResponseSpec createPerson() {
+        return webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PERSON_REQUEST))
+                .exchange();
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        @Bean
+        @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
+        GenericContainer<?> REDIS_CONTAINER() {
+            return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
+                    .withExposedPorts(6379);
+        }
+
+        // The write back only runs when the test asks for it, so the backlog stays above the high-water mark
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(Duration.ofMinutes(10).toMillis());
+            properties.setWriteBackMaxStaleness(Duration.ofMinutes(10));
+            properties.setBackpressurePolicy(PersonServiceCacheProperties.BackpressurePolicy.REJECT);
+            properties.setBackpressureHighWaterMark(3);
+            properties.setBackpressureSampleInterval(Duration.ofMillis(100));
+
+            return properties;
+        }
+    }
+}
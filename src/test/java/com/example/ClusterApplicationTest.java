@@ -0,0 +1,263 @@
+package com.example;
+
+import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
+import com.example.person.PersonRepository;
+import com.example.person.PersonService;
+import com.example.person.PersonServiceCacheProperties;
+import com.example.person.api.PersonBatchRequest;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import io.lettuce.core.internal.HostAndPort;
+import io.lettuce.core.resource.DnsResolver;
+import io.lettuce.core.resource.MappingSocketAddressResolver;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(ClusterApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class ClusterApplicationTest {
+
+    private static final List<Integer> REDIS_CLUSTER_PORTS = List.of(7000, 7001, 7002);
+
+    // Three masters in a single container stand in for a cluster spread over several hosts
+    @Container
+    private static final GenericContainer<?> REDIS_CLUSTER_CONTAINER = new GenericContainer<>(DockerImageName.parse("redis"))
+            .withCommand("sh", "-c", """
+                    for port in 7000 7001 7002; do
+                        redis-server --port $port --cluster-enabled yes --cluster-config-file nodes-$port.conf \\
+                            --maxmemory-policy volatile-lru --daemonize yes
+                    done
+                    redis-cli --cluster create 127.0.0.1:7000 127.0.0.1:7001 127.0.0.1:7002 --cluster-yes
+                    until redis-cli -p 7000 cluster info | grep -q cluster_state:ok; do sleep 0.1; done
+                    echo "Redis cluster ready"
+                    tail -f /dev/null
+                    """)
+            .withExposedPorts(REDIS_CLUSTER_PORTS.toArray(Integer[]::new))
+            .waitingFor(Wait.forLogMessage(".*Redis cluster ready.*", 1));
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonServiceCacheProperties cacheProperties;
+
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private PersonService personService;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @DynamicPropertySource
+    static void redisClusterProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.cluster.nodes", () -> REDIS_CLUSTER_PORTS.stream()
+                .map(port -> REDIS_CLUSTER_CONTAINER.getHost() + ":" + REDIS_CLUSTER_CONTAINER.getMappedPort(port))
+                .collect(Collectors.joining(",")));
+    }
+
+    @Test
+    void creatingFindingAndWritingBackPeopleSpreadOverClusterNodes() {
+        final var batchRequest = PersonBatchRequest.builder()
+                .people(IntStream.range(0, 20)
+                        .mapToObj(index -> PersonRequest.builder().name("Person " + index).age(20 + index).build())
+                        .toList())
+                .build();
+
+        final var peopleCreated = webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBodyList(PersonResponse.class)
+                .hasSize(20)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(peopleCreated);
+
+        // Reading them all at once runs the read script once per cluster slot
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/people")
+                        .queryParam("id", peopleCreated.stream().map(PersonResponse::getId).toArray())
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBodyList(PersonResponse.class)
+                .isEqualTo(peopleCreated);
+
+        final var personKeys = peopleCreated.stream()
+                .map(personResponse -> personCacheKeys.personKey(personResponse.getId()))
+                .toList();
+        try (final var clusterConnection = redisConnectionFactory.getClusterConnection()) {
+            final var nodes = personKeys.stream()
+                    .map(personKey -> clusterConnection.clusterGetNodeForKey(personKey.getBytes()).getId())
+                    .collect(Collectors.toSet());
+            assertTrue(nodes.size() > 1);
+        }
+
+        // Every partition is flushed, and each person expires only once its own partition was written back
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> {
+                    peopleCreated.forEach(personResponse ->
+                            assertTrue(personRepository.existsById(personResponse.getId())));
+                    personKeys.forEach(personKey -> assertTrue(stringRedisTemplate.getExpire(personKey) > 0));
+                });
+    }
+
+    // A batch this large spreads over about as many slots as people, which are read and expired all together
+    @Test
+    void findingAndWritingBackLargestBatchOnCluster() {
+        final var batchRequest = PersonBatchRequest.builder()
+                .people(IntStream.range(0, 1000)
+                        .mapToObj(index -> PersonRequest.builder().name("Person " + index).age(index % 100).build())
+                        .toList())
+                .build();
+
+        final var peopleCreated = webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBodyList(PersonResponse.class)
+                .hasSize(1000)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(peopleCreated);
+        final var personIds = peopleCreated.stream().map(PersonResponse::getId).toList();
+
+        // Looked up through the service, since a thousand IDs do not fit in the query string Tomcat accepts
+        final var peopleFound = personService.findAll(personIds);
+        assertEquals(personIds, peopleFound.stream().map(Person::getId).toList());
+        assertEquals(
+                peopleCreated.stream().map(PersonResponse::getName).toList(),
+                peopleFound.stream().map(Person::getName).toList()
+        );
+
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 5))
+                .untilAsserted(() -> {
+                    final var peopleWrittenBack = new ArrayList<Person>();
+                    personRepository.findAllById(personIds).forEach(peopleWrittenBack::add);
+                    assertEquals(1000, peopleWrittenBack.size());
+                    personIds.forEach(personId ->
+                            assertTrue(stringRedisTemplate.getExpire(personCacheKeys.personKey(personId)) > 0));
+                });
+    }
+
+    // The person and its write back set are on different slots, so it is queued apart from the change itself
+    @Test
+    void updatingPersonOnClusterIsWrittenBackAndExpires() {
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Bruce Wayne").age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+        final var segments = location.getPath().split("/");
+        final var personId = UUID.fromString(segments[segments.length - 1]);
+
+        webTestClient.put()
+                .uri("/people/{personId}", personId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Batman").age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK);
+
+        final var personKey = personCacheKeys.personKey(personId);
+        Awaitility.await()
+                .atMost(Duration.ofMillis(cacheProperties.getWriteBackRate() * 3))
+                .untilAsserted(() -> {
+                    final var person = personRepository.findById(personId);
+                    assertTrue(person.isPresent());
+                    assertEquals("Batman", person.get().getName());
+                    assertTrue(stringRedisTemplate.getExpire(personKey) > 0);
+                });
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        // Cluster nodes announce the ports they listen on inside the container, which are mapped to others on the host
+        @Bean
+        ClientResourcesBuilderCustomizer redisClusterClientResourcesBuilderCustomizer() {
+            return builder -> builder.socketAddressResolver(MappingSocketAddressResolver.create(
+                    DnsResolver.unresolved(),
+                    hostAndPort -> REDIS_CLUSTER_PORTS.contains(hostAndPort.getPort())
+                            ? HostAndPort.of(REDIS_CLUSTER_CONTAINER.getHost(),
+                            REDIS_CLUSTER_CONTAINER.getMappedPort(hostAndPort.getPort()))
+                            : hostAndPort
+            ));
+        }
+
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(1000 /* milliseconds */);
+            properties.setWriteBackMaxStaleness(Duration.ofMillis(properties.getWriteBackRate()));
+
+            return properties;
+        }
+    }
+}
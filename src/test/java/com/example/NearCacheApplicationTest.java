@@ -0,0 +1,181 @@
+package com.example;
+
+import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
+import com.example.person.PersonServiceCacheProperties;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(NearCacheApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class NearCacheApplicationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonServiceCacheProperties cacheProperties;
+
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
+    @Autowired
+    private RedisTemplate<String, Person> personRedisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void changingPersonNeverServesItsNearCachedValue() {
+        final var personId = createPerson("Bruce Wayne");
+        assertEquals("Bruce Wayne", findPerson(personId).getName());
+
+        webTestClient.put()
+                .uri("/people/{personId}", personId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Batman").age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK);
+        assertEquals("Batman", findPerson(personId).getName());
+
+        webTestClient.delete()
+                .uri("/people/{personId}", personId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NO_CONTENT);
+        webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void changesMadeByAnotherNodeInvalidateTheNearCache() {
+        final var nearCacheHits = meterRegistry.get("person.cache.lookups").tag("source", "near_cache").counter();
+        final var personId = createPerson("Clark Kent");
+        findPerson(personId);
+        final var nearCacheHitsBefore = nearCacheHits.count();
+        assertEquals("Clark Kent", findPerson(personId).getName());
+        assertEquals(nearCacheHitsBefore + 1, nearCacheHits.count());
+
+        // Simulating another node changing the person on Redis and announcing it
+        final var personUpdated = person(personId, "Superman", 2);
+        personRedisTemplate.opsForValue().set(personCacheKeys.personKey(personId), personUpdated);
+        stringRedisTemplate.convertAndSend(cacheProperties.getNearCacheInvalidationChannel(), "another-node " + personId);
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals("Superman", findPerson(personId).getName()));
+
+        final var tombstone = person(personId, null, 3);
+        tombstone.setDeleted(true);
+        personRedisTemplate.opsForValue().set(personCacheKeys.personKey(personId), tombstone);
+        stringRedisTemplate.convertAndSend(cacheProperties.getNearCacheInvalidationChannel(), "another-node " + personId);
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> webTestClient.get()
+                        .uri("/people/{personId}", personId)
+                        .exchange()
+                        .expectStatus().isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    private UUID createPerson(String name) {
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name(name).age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assert location != null;
+
+        final var segments = location.getPath().split("/");
+        return UUID.fromString(segments[segments.length - 1]);
+    }
+
+    private PersonResponse findPerson(UUID personId) {
+        return webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(PersonResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    private static Person person(UUID personId, String name, long version) {
+        final var person = new Person();
+        person.setId(personId);
+        person.setName(name);
+        person.setAge(35);
+        person.setVersion(version);
+
+        return person;
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        @Bean
+        @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
+        GenericContainer<?> REDIS_CONTAINER() {
+            return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
+                    .withExposedPorts(6379);
+        }
+
+        // Near cached people would otherwise be served for the whole time to live, whatever changed on Redis
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(1000 /* milliseconds */);
+            properties.setNearCacheEnabled(true);
+            properties.setNearCacheTtl(Duration.ofMinutes(10));
+
+            return properties;
+        }
+    }
+}
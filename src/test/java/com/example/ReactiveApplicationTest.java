@@ -0,0 +1,162 @@
+package com.example;
+
+import com.example.person.api.PersonBatchRequest;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+@Import(ApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class ReactiveApplicationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void creatingAndFindingPerson() {
+        final var personRequest = PersonRequest.builder()
+                .name("John Smith")
+                .age(45)
+                .build();
+
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(personRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectHeader().exists(HttpHeaders.LOCATION)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+
+        final var personResponse = webTestClient.get()
+                .uri(location)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(PersonResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(personResponse);
+        assertEquals(personRequest.getName(), personResponse.getName());
+        assertEquals(personRequest.getAge(), personResponse.getAge());
+    }
+
+    @Test
+    void creatingAndFindingPeopleInBatch() {
+        final var batchRequest = PersonBatchRequest.builder()
+                .people(List.of(
+                        PersonRequest.builder().name("Bruce Wayne").age(35).build(),
+                        PersonRequest.builder().name("Clark Kent").age(33).build()
+                ))
+                .build();
+
+        final var peopleCreated = webTestClient.post()
+                .uri("/people/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(batchRequest))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBodyList(PersonResponse.class)
+                .hasSize(2)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(peopleCreated);
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/people")
+                        .queryParam("id", peopleCreated.get(1).getId())
+                        .queryParam("id", UUID.randomUUID())
+                        .queryParam("id", peopleCreated.get(0).getId())
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBodyList(PersonResponse.class)
+                .isEqualTo(List.of(peopleCreated.get(1), peopleCreated.get(0)));
+    }
+
+    @Test
+    void updatingAndDeletingPerson() {
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Tony Stark").age(48).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+
+        webTestClient.put()
+                .uri(location)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Iron Man").age(49).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Iron Man")
+                .jsonPath("$.age").isEqualTo(49);
+
+        webTestClient.delete()
+                .uri(location)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NO_CONTENT);
+        webTestClient.get()
+                .uri(location)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void creatingPersonWithoutName() {
+        webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().age(45).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void findingUnknownPersonById() {
+        final var randomPersonId = UUID.randomUUID();
+
+        webTestClient.get()
+                .uri("/people/{personId}", randomPersonId)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND)
+                .expectBody()
+                .jsonPath("$.title").value(Matchers.equalTo("Person not found by ID"), String.class)
+                .jsonPath("$.status").value(Matchers.equalTo(404), Integer.class)
+                .jsonPath("$.detail").value(Matchers.equalTo("No person with ID " + randomPersonId + " exists"), String.class)
+                .jsonPath("$.instance").value(Matchers.equalTo("/people/" + randomPersonId), String.class);
+    }
+}
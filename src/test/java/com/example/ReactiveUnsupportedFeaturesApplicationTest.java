@@ -0,0 +1,137 @@
+package com.example;
+
+import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
+import com.example.person.PersonRepository;
+import com.example.person.PersonServiceCacheProperties;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The reactive service ignores the write buffer and the load lock, which these tests enable to show they are unused
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+@Import(ReactiveUnsupportedFeaturesApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class ReactiveUnsupportedFeaturesApplicationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    void creatingPersonCachesItWithoutWriteBuffer() {
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Bruce Wayne").age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assertNotNull(location);
+
+        // The buffer would only be flushed to Redis a minute from now
+        final var segments = location.getPath().split("/");
+        final var personId = UUID.fromString(segments[segments.length - 1]);
+        assertTrue(stringRedisTemplate.hasKey(personCacheKeys.personKey(personId)));
+        assertNotNull(stringRedisTemplate.opsForZSet().score(personCacheKeys.writeBackKey(personId), personId.toString()));
+    }
+
+    @Test
+    void findingPersonMissingOnCacheIgnoresLoadLock() {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName("Clark Kent");
+        person.setAge(33);
+        person.setVersion(1);
+        personRepository.save(person);
+
+        // Simulating another node holding the load lock for longer than the client waits for a response
+        stringRedisTemplate.opsForValue().set(personCacheKeys.loadLockKey(person.getId()), "another-node", Duration.ofMinutes(1));
+
+        final var personResponse = webTestClient.get()
+                .uri("/people/{personId}", person.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(PersonResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(personResponse);
+        assertEquals(person.getName(), personResponse.getName());
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        @Bean
+        @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
+        GenericContainer<?> REDIS_CONTAINER() {
+            return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
+                    .withExposedPorts(6379);
+        }
+
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(Duration.ofMinutes(10).toMillis());
+            properties.setWriteBackMaxStaleness(Duration.ofMinutes(10));
+            properties.setWriteBufferEnabled(true);
+            properties.setWriteBufferDurability(PersonServiceCacheProperties.WriteBufferDurability.BUFFER);
+            properties.setWriteBufferFlushInterval(Duration.ofMinutes(1));
+            properties.setLoadLockEnabled(true);
+            properties.setLoadLockTimeout(Duration.ofMinutes(1));
+
+            return properties;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example;
+
+import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
+import com.example.person.PersonRepository;
+import com.example.person.PersonServiceCacheProperties;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(WarmUpApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class WarmUpApplicationTest {
+
+    private static final UUID PERSON_ID_CLEAN = UUID.randomUUID();
+    private static final UUID PERSON_ID_CHANGED = UUID.randomUUID();
+    private static final UUID PERSON_ID_DELETED = UUID.randomUUID();
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
+    @Autowired
+    private RedisTemplate<String, Person> personRedisTemplate;
+
+    @Test
+    void warmingUpNeverOverwritesChangesWaitingForWriteBack() {
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(10))
+                .untilAsserted(() -> webTestClient.get()
+                        .uri("/actuator/health/readiness")
+                        .exchange()
+                        .expectStatus().isEqualTo(HttpStatus.OK));
+
+        final var personClean = personRedisTemplate.opsForValue().get(personCacheKeys.personKey(PERSON_ID_CLEAN));
+        assertNotNull(personClean);
+        assertEquals(1, personClean.getVersion());
+        assertTrue(personRedisTemplate.getExpire(personCacheKeys.personKey(PERSON_ID_CLEAN)) > 0);
+
+        final var personChanged = personRedisTemplate.opsForValue().get(personCacheKeys.personKey(PERSON_ID_CHANGED));
+        assertNotNull(personChanged);
+        assertEquals("Batman", personChanged.getName());
+        assertEquals(2, personChanged.getVersion());
+
+        final var personDeleted = personRedisTemplate.opsForValue().get(personCacheKeys.personKey(PERSON_ID_DELETED));
+        assertNotNull(personDeleted);
+        assertTrue(personDeleted.isDeleted());
+        webTestClient.get()
+                .uri("/people/{personId}", PERSON_ID_DELETED)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private static Person person(UUID personId, String name, long version) {
+        final var person = new Person();
+        person.setId(personId);
+        person.setName(name);
+        person.setAge(35);
+        person.setVersion(version);
+
+        return person;
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        @Bean
+        @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
+        GenericContainer<?> REDIS_CONTAINER() {
+            return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
+                    .withExposedPorts(6379);
+        }
+
+        // Runners run before the application is ready, and so before the warm up starts. The changed and deleted
+        // people are cached as a change waiting for write back would be, newer than their rows
+        @Bean
+        ApplicationRunner personSeeder(PersonRepository personRepository,
+                                       RedisTemplate<String, Person> personRedisTemplate,
+                                       PersonCacheKeys personCacheKeys) {
+            return arguments -> {
+                personRepository.upsertAll(List.of(
+                        person(PERSON_ID_CLEAN, "Clark Kent", 1),
+                        person(PERSON_ID_CHANGED, "Bruce Wayne", 1),
+                        person(PERSON_ID_DELETED, "Diana Prince", 1)
+                ));
+
+                personRedisTemplate.opsForValue()
+                        .set(personCacheKeys.personKey(PERSON_ID_CHANGED), person(PERSON_ID_CHANGED, "Batman", 2));
+                final var tombstone = person(PERSON_ID_DELETED, null, 2);
+                tombstone.setDeleted(true);
+                personRedisTemplate.opsForValue().set(personCacheKeys.personKey(PERSON_ID_DELETED), tombstone);
+            };
+        }
+
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(Duration.ofMinutes(10).toMillis());
+            properties.setWriteBackMaxStaleness(Duration.ofMinutes(10));
+            properties.setWarmUpEnabled(true);
+            properties.setWarmUpPageSize(2);
+
+            return properties;
+        }
+    }
+}
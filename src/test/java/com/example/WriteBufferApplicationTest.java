@@ -0,0 +1,145 @@
+package com.example;
+
+import com.example.person.Person;
+import com.example.person.PersonCacheKeys;
+import com.example.person.PersonServiceCacheProperties;
+import com.example.person.api.PersonRequest;
+import com.example.person.api.PersonResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisConnectionDetails;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// People stay in the write buffer for a minute, so every lookup below is made before they are flushed to Redis
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(WriteBufferApplicationTest.TestConfig.class)
+@AutoConfigureWebTestClient
+@Testcontainers
+class WriteBufferApplicationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private PersonCacheKeys personCacheKeys;
+
+    @Autowired
+    private RedisTemplate<String, Person> personRedisTemplate;
+
+    @Test
+    void creatingPersonIsFoundBeforeItIsFlushed() {
+        final var personId = createPerson("Bruce Wayne");
+
+        assertFalse(personRedisTemplate.hasKey(personCacheKeys.personKey(personId)));
+        assertEquals("Bruce Wayne", findPerson(personId).getName());
+    }
+
+    @Test
+    void updatingPersonBeforeItIsFlushedIsFoundUpdated() {
+        final var personId = createPerson("Clark Kent");
+
+        webTestClient.put()
+                .uri("/people/{personId}", personId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name("Superman").age(33).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK);
+
+        assertEquals("Superman", findPerson(personId).getName());
+        final var personOnCache = personRedisTemplate.opsForValue().get(personCacheKeys.personKey(personId));
+        assertNotNull(personOnCache);
+        assertEquals(2, personOnCache.getVersion());
+
+        webTestClient.delete()
+                .uri("/people/{personId}", personId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NO_CONTENT);
+        webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private UUID createPerson(String name) {
+        final var location = webTestClient.post()
+                .uri("/people")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(PersonRequest.builder().name(name).age(35).build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CREATED)
+                .expectBody().isEmpty()
+                .getResponseHeaders()
+                .getLocation();
+        assert location != null;
+
+        final var segments = location.getPath().split("/");
+        return UUID.fromString(segments[segments.length - 1]);
+    }
+
+    private PersonResponse findPerson(UUID personId) {
+        return webTestClient.get()
+                .uri("/people/{personId}", personId)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.OK)
+                .expectBody(PersonResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @TestConfiguration
+    static class TestConfig {
+
+        @Bean
+        @ServiceConnection(type = JdbcConnectionDetails.class)
+        PostgreSQLContainer<?> POSTGRES_CONTAINER() {
+            return new PostgreSQLContainer<>(DockerImageName.parse("postgres"));
+        }
+
+        @Bean
+        @ServiceConnection(name = "redis", type = RedisConnectionDetails.class)
+        GenericContainer<?> REDIS_CONTAINER() {
+            return new GenericContainer<>(DockerImageName.parse("redis"))
+                    .withCommand("redis-server", "--maxmemory-policy", "volatile-lru")
+                    .withExposedPorts(6379);
+        }
+
+        @Bean
+        @Primary
+        PersonServiceCacheProperties personServiceCacheProperties() {
+            final var properties = new PersonServiceCacheProperties();
+
+            properties.setWriteBackKey("person:write_back_test");
+            properties.setWriteBackRate(Duration.ofMinutes(10).toMillis());
+            properties.setWriteBackMaxStaleness(Duration.ofMinutes(10));
+            properties.setWriteBufferEnabled(true);
+            properties.setWriteBufferDurability(PersonServiceCacheProperties.WriteBufferDurability.BUFFER);
+            properties.setWriteBufferFlushInterval(Duration.ofMinutes(1));
+
+            return properties;
+        }
+    }
+}
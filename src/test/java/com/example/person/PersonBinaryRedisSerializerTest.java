@@ -0,0 +1,113 @@
+package com.example.person;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersonBinaryRedisSerializerTest {
+
+    private final Jackson2JsonRedisSerializer<Person> jsonSerializer = new Jackson2JsonRedisSerializer<>(Person.class);
+
+    private final PersonBinaryRedisSerializer serializer = new PersonBinaryRedisSerializer(jsonSerializer);
+
+    @Test
+    void roundTrippingPerson() {
+        final var person = person("Bruce Wayne", 35, 7);
+
+        final var bytes = serializer.serialize(person);
+
+        assertEquals(PersonBinaryRedisSerializer.FORMAT_VERSION, bytes[0]);
+        assertEquals(person, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void roundTrippingNegativeAndLargeValues() {
+        for (final var person : new Person[]{
+                person("Negative", -1, -1),
+                person("Minimum", Integer.MIN_VALUE, Long.MIN_VALUE),
+                person("Maximum", Integer.MAX_VALUE, Long.MAX_VALUE),
+                person("", 0, 0),
+                person("Zoë 李", 128, 16_384)}) {
+            assertEquals(person, serializer.deserialize(serializer.serialize(person)));
+        }
+    }
+
+    @Test
+    void roundTrippingTombstone() {
+        final var tombstone = new Person();
+        tombstone.setId(UUID.randomUUID());
+        tombstone.setVersion(12);
+        tombstone.setDeleted(true);
+
+        final var bytes = serializer.serialize(tombstone);
+
+        assertEquals(3, bytes[0]);
+        assertEquals(1 + 16 + 1, bytes.length);
+        assertEquals(tombstone, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void deserializingUnversionedFormat() {
+        final var person = person("Clark Kent", 33, 0);
+        final var name = person.getName().getBytes(StandardCharsets.UTF_8);
+
+        final var bytes = new ByteArrayOutputStream();
+        bytes.write(1);
+        bytes.writeBytes(ByteBuffer.allocate(16)
+                .putLong(person.getId().getMostSignificantBits())
+                .putLong(person.getId().getLeastSignificantBits())
+                .array());
+        bytes.write(person.getAge());
+        bytes.write(name.length);
+        bytes.writeBytes(name);
+
+        assertEquals(person, serializer.deserialize(bytes.toByteArray()));
+    }
+
+    @Test
+    void deserializingLegacyJson() {
+        final var person = person("Diana Prince", 30, 4);
+
+        assertEquals(person, serializer.deserialize(jsonSerializer.serialize(person)));
+    }
+
+    @Test
+    void serializingNull() {
+        assertArrayEquals(new byte[0], serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    void rejectingIncompleteAndTruncatedPeople() {
+        final var incomplete = person(null, 30, 1);
+        assertThrows(SerializationException.class, () -> serializer.serialize(incomplete));
+
+        final var bytes = serializer.serialize(person("Barry Allen", 28, 3));
+        final var truncated = Arrays.copyOf(bytes, bytes.length - 2);
+        final var exception = assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+        assertTrue(exception.getMessage().contains("truncated"));
+    }
+
+    private static Person person(String name, int age, long version) {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName(name);
+        person.setAge(age);
+        person.setVersion(version);
+
+        return person;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PersonCacheWarmUpTest {
+
+    private static final long AMOUNT_OF_PEOPLE = 6;
+    private static final int PAGE_SIZE = 2;
+
+    private final Semaphore pagesAllowed = new Semaphore(0);
+    private final JdbcTemplate jdbcTemplate = jdbcTemplate(pagesAllowed);
+    private final PersonCacheWarmUp warmUp = new PersonCacheWarmUp(
+            cacheProperties(),
+            Mockito.mock(PersonCacheKeys.class),
+            personRedisTemplate(),
+            jdbcTemplate,
+            new SimpleMeterRegistry()
+    );
+
+    @AfterEach
+    void finishWarmUp() {
+        pagesAllowed.release(Integer.MAX_VALUE / 2);
+    }
+
+    @Test
+    void readinessIsOutOfServiceUntilReadyPercentageIsLoaded() {
+        warmUp.start();
+        assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+
+        // Half of the people are needed, so one page of two out of six is not enough
+        pagesAllowed.release();
+        awaitLoaded(2);
+        assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+
+        pagesAllowed.release();
+        awaitLoaded(4);
+        assertEquals(Status.UP, warmUp.health().getStatus());
+    }
+
+    @Test
+    void readinessIsUpOnceWarmUpStopsWithoutReachingReadyPercentage() {
+        Mockito.when(jdbcTemplate.queryForObject(ArgumentMatchers.anyString(),
+                        ArgumentMatchers.eq(Long.class), ArgumentMatchers.any(Object[].class)))
+                .thenThrow(new IllegalStateException("Database unavailable"));
+
+        warmUp.start();
+
+        // A cold cache is slower but still correct
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(Status.UP, warmUp.health().getStatus()));
+        assertEquals(0L, warmUp.health().getDetails().get("loaded"));
+    }
+
+    private void awaitLoaded(long amountOfPeople) {
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(amountOfPeople, warmUp.health().getDetails().get("loaded")));
+    }
+
+    private static PersonServiceCacheProperties cacheProperties() {
+        final var properties = new PersonServiceCacheProperties();
+        properties.setWarmUpEnabled(true);
+        properties.setWarmUpPageSize(PAGE_SIZE);
+        properties.setWarmUpReadyPercentage(50);
+
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisTemplate<String, Person> personRedisTemplate() {
+        final RedisTemplate<String, Person> personRedisTemplate = Mockito.mock(RedisTemplate.class);
+        Mockito.when(personRedisTemplate.executePipelined(ArgumentMatchers.any(SessionCallback.class)))
+                .thenReturn(List.of());
+
+        return personRedisTemplate;
+    }
+
+    // Each page waits to be allowed, so the test decides how far the warm up gets
+    private static JdbcTemplate jdbcTemplate(Semaphore pagesAllowed) {
+        final var jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        Mockito.when(jdbcTemplate.queryForObject(ArgumentMatchers.anyString(), ArgumentMatchers.eq(Long.class),
+                        ArgumentMatchers.any(Object[].class)))
+                .thenReturn(AMOUNT_OF_PEOPLE);
+        Mockito.doAnswer(invocation -> {
+            pagesAllowed.acquire();
+            final var rowCallbackHandler = invocation.<RowCallbackHandler>getArgument(1);
+            for (var row = 0; row < PAGE_SIZE; row++) {
+                final var resultSet = Mockito.mock(ResultSet.class);
+                Mockito.when(resultSet.getObject(1, UUID.class)).thenReturn(UUID.randomUUID());
+                Mockito.when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(System.currentTimeMillis()));
+                rowCallbackHandler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(ArgumentMatchers.anyString(), ArgumentMatchers.any(RowCallbackHandler.class),
+                ArgumentMatchers.any(Object[].class));
+
+        return jdbcTemplate;
+    }
+}
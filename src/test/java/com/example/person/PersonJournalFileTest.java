@@ -0,0 +1,150 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersonJournalFileTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void replayingPeopleAppendedBeforeRestart() throws Exception {
+        final var people = List.of(person("Bruce Wayne", 35), person("Clark Kent", 33), person("Diana Prince", 30));
+
+        final var journal = journal();
+        journal.append(people.subList(0, 1));
+        journal.append(people.subList(1, 3));
+        journal.shutdown();
+
+        final var journalRestarted = journal();
+        final var peopleReplayed = new ArrayList<Person>();
+        assertEquals(3, journalRestarted.replay(peopleReplayed::addAll));
+        assertEquals(people, peopleReplayed);
+        assertEquals(0, journalRestarted.replay(peopleReplayed::addAll));
+        journalRestarted.shutdown();
+
+        try (final var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void replayingPeopleBeforeTornRecord() throws Exception {
+        final var people = List.of(person("Bruce Wayne", 35), person("Clark Kent", 33));
+
+        final var journal = journal();
+        journal.append(people);
+        journal.shutdown();
+
+        // Simulating a crash halfway through writing the last record
+        try (final var files = Files.list(directory)) {
+            final var segment = files.findFirst().orElseThrow();
+            try (final var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+        }
+
+        final var journalRestarted = journal();
+        final var peopleReplayed = new ArrayList<Person>();
+        assertEquals(1, journalRestarted.replay(peopleReplayed::addAll));
+        assertEquals(people.subList(0, 1), peopleReplayed);
+        journalRestarted.shutdown();
+    }
+
+    @Test
+    void appendingWhenSegmentCannotBeCreatedFails() throws Exception {
+        final var journalDirectory = directory.resolve("journal");
+        final var journal = journal(journalDirectory);
+        Files.delete(journalDirectory);
+
+        final var exception = assertThrows(UncheckedIOException.class,
+                () -> journal.append(List.of(person("Bruce Wayne", 35))));
+        assertInstanceOf(NoSuchFileException.class, exception.getCause());
+        journal.shutdown();
+    }
+
+    @Test
+    void syncingEveryAppendInFlightOnShutdown() throws Exception {
+        final var journal = journal();
+        final var peopleAppended = new ConcurrentLinkedQueue<Person>();
+        final var failures = new ConcurrentLinkedQueue<RuntimeException>();
+        final var appending = new CountDownLatch(8);
+
+        final var appenders = new ArrayList<Thread>();
+        for (var index = 0; index < 8; index++) {
+            appenders.add(Thread.ofPlatform().start(() -> {
+                appending.countDown();
+                while (true) {
+                    final var person = person("Bruce Wayne", 35);
+                    try {
+                        journal.append(List.of(person));
+                    } catch (RuntimeException exception) {
+                        // Refused once the journal is shut down, but never failed while syncing
+                        if (!"Journal is not running".equals(exception.getMessage())) {
+                            failures.add(exception);
+                        }
+                        return;
+                    }
+                    peopleAppended.add(person);
+                }
+            }));
+        }
+        appending.await();
+        Thread.sleep(100);
+        journal.shutdown();
+        for (final var appender : appenders) {
+            appender.join();
+        }
+
+        assertEquals(List.of(), List.copyOf(failures));
+
+        final var journalRestarted = journal();
+        final var peopleReplayed = new ArrayList<Person>();
+        journalRestarted.replay(peopleReplayed::addAll);
+        journalRestarted.shutdown();
+        assertEquals(Set.copyOf(peopleAppended), Set.copyOf(peopleReplayed));
+        assertEquals(peopleAppended.size(), peopleReplayed.size());
+    }
+
+    private PersonJournalFile journal() throws IOException {
+        return journal(directory);
+    }
+
+    private static PersonJournalFile journal(Path directory) throws IOException {
+        final var properties = new PersonServiceCacheProperties();
+        properties.setJournalDirectory(directory);
+
+        final var journal = new PersonJournalFile(properties, new SimpleMeterRegistry());
+        journal.start();
+        return journal;
+    }
+
+    private static Person person(String name, Integer age) {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName(name);
+        person.setAge(age);
+
+        return person;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.person;
+
+import io.lettuce.core.event.connection.ConnectionActivatedEvent;
+import io.lettuce.core.event.connection.ConnectionDeactivatedEvent;
+import io.lettuce.core.resource.ClientResources;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersonKnownIdsBloomFilterTest {
+
+    private final UUID personIdPersisted = UUID.randomUUID();
+    private final PersonServiceCacheProperties cacheProperties = new PersonServiceCacheProperties();
+    private final JdbcTemplate jdbcTemplate = jdbcTemplate(personIdPersisted);
+    private final PersonKnownIdsBloomFilter knownIds = new PersonKnownIdsBloomFilter(
+            cacheProperties,
+            Mockito.mock(PersonCacheKeys.class),
+            Mockito.mock(PersonWriteBackPartitions.class),
+            Mockito.mock(StringRedisTemplate.class),
+            jdbcTemplate,
+            Mockito.mock(ClientResources.class)
+    );
+
+    @Test
+    void negativeAnswersAreConfirmedOnlyUpToTheConfiguredRate() {
+        cacheProperties.setKnownIdsFilterConfirmationsPerSecond(2);
+
+        assertTrue(knownIds.tryConfirm());
+        assertTrue(knownIds.tryConfirm());
+        assertFalse(knownIds.tryConfirm());
+    }
+
+    @Test
+    void announcedPeopleMightExist() {
+        final var personIdCreated = UUID.randomUUID();
+        knownIds.load();
+        assertFalse(knownIds.mightExist(personIdCreated));
+
+        knownIds.onMessage(message(PersonKnownIdsBloomFilter.message(List.of(personIdCreated))), null);
+
+        assertTrue(knownIds.mightExist(personIdCreated));
+        assertTrue(knownIds.mightExist(personIdPersisted));
+    }
+
+    @Test
+    void everyPersonMightExistFromDisconnectionUntilLoadedAgain() {
+        final var personIdUnknown = UUID.randomUUID();
+        final var address = new InetSocketAddress("localhost", 6379);
+        knownIds.load();
+        assertFalse(knownIds.mightExist(personIdUnknown));
+
+        knownIds.onConnectionEvent(new ConnectionDeactivatedEvent(address, address));
+        assertTrue(knownIds.mightExist(personIdUnknown));
+
+        knownIds.onConnectionEvent(new ConnectionActivatedEvent(address, address));
+        assertFalse(knownIds.mightExist(personIdUnknown));
+        assertTrue(knownIds.mightExist(personIdPersisted));
+        Mockito.verify(jdbcTemplate, Mockito.times(2)).query(ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(RowCallbackHandler.class), ArgumentMatchers.any(Object[].class));
+    }
+
+    @Test
+    void loadingPersistedPeopleOnePageAtATime() {
+        final var personIdsPersisted = Stream.generate(UUID::randomUUID).limit(5).toArray(UUID[]::new);
+        final var jdbcTemplatePaged = jdbcTemplate(personIdsPersisted);
+        cacheProperties.setKnownIdsFilterLoadPageSize(2);
+        final var knownIdsPaged = new PersonKnownIdsBloomFilter(
+                cacheProperties,
+                Mockito.mock(PersonCacheKeys.class),
+                Mockito.mock(PersonWriteBackPartitions.class),
+                Mockito.mock(StringRedisTemplate.class),
+                jdbcTemplatePaged,
+                Mockito.mock(ClientResources.class)
+        );
+
+        knownIdsPaged.load();
+
+        for (final var personId : personIdsPersisted) {
+            assertTrue(knownIdsPaged.mightExist(personId));
+        }
+        Mockito.verify(jdbcTemplatePaged, Mockito.times(3)).query(ArgumentMatchers.anyString(),
+                ArgumentMatchers.any(RowCallbackHandler.class), ArgumentMatchers.any(Object[].class));
+    }
+
+    // Serves the IDs in pages, as the keyset pagination queries would
+    private static JdbcTemplate jdbcTemplate(UUID... personIds) {
+        final var personIdsSorted = Stream.of(personIds).sorted().toList();
+        final var jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        Mockito.doAnswer(invocation -> {
+            final var arguments = invocation.getArguments();
+            final var limit = (int) arguments[arguments.length - 1];
+            final var lastPersonId = arguments.length > 3 ? (UUID) arguments[2] : null;
+            final var page = personIdsSorted.stream()
+                    .filter(personId -> lastPersonId == null || personId.compareTo(lastPersonId) > 0)
+                    .limit(limit)
+                    .toList();
+            for (final var personId : page) {
+                final var resultSet = Mockito.mock(ResultSet.class);
+                Mockito.when(resultSet.getObject(1, UUID.class)).thenReturn(personId);
+                invocation.<RowCallbackHandler>getArgument(1).processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(ArgumentMatchers.anyString(), ArgumentMatchers.any(RowCallbackHandler.class),
+                ArgumentMatchers.any(Object[].class));
+
+        return jdbcTemplate;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(
+                "person:known_ids".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+}
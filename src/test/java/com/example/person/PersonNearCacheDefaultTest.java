@@ -0,0 +1,93 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersonNearCacheDefaultTest {
+
+    private static final String NODE_ID = "this-node";
+
+    private final PersonServiceCacheProperties cacheProperties = cacheProperties();
+    private final StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+    private final PersonNearCacheDefault nearCache =
+            new PersonNearCacheDefault(cacheProperties, stringRedisTemplate, new SimpleMeterRegistry());
+
+    @Test
+    void olderVersionReadBeforeChangeNeverReplacesTheChange() {
+        final var personId = UUID.randomUUID();
+        final var personRead = person(personId, "Bruce Wayne", 1);
+        final var personChanged = person(personId, "Batman", 2);
+
+        nearCache.put(personRead);
+        nearCache.invalidate(personId);
+        nearCache.put(personChanged);
+        nearCache.put(personRead);
+
+        assertEquals(Optional.of(personChanged), nearCache.get(personId));
+        Mockito.verify(stringRedisTemplate)
+                .convertAndSend(cacheProperties.getNearCacheInvalidationChannel(), NODE_ID + " " + personId);
+    }
+
+    @Test
+    void deletedPersonStaysMissingWhenOlderVersionIsPutAfterwards() {
+        final var personId = UUID.randomUUID();
+        final var personRead = person(personId, "Clark Kent", 1);
+        final var tombstone = person(personId, null, 2);
+        tombstone.setDeleted(true);
+
+        nearCache.put(personRead);
+        nearCache.invalidate(personId);
+        nearCache.put(tombstone);
+        nearCache.put(personRead);
+
+        assertEquals(Optional.empty(), nearCache.get(personId));
+        assertTrue(nearCache.isMissing(personId));
+    }
+
+    @Test
+    void invalidationFromAnotherNodeEvictsPerson() {
+        final var personId = UUID.randomUUID();
+        nearCache.put(person(personId, "Diana Prince", 1));
+
+        nearCache.onMessage(message(NODE_ID + " " + personId), null);
+        assertTrue(nearCache.get(personId).isPresent());
+
+        nearCache.onMessage(message("another-node " + personId), null);
+        assertFalse(nearCache.get(personId).isPresent());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(
+                "person:invalidation".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static PersonServiceCacheProperties cacheProperties() {
+        final var properties = new PersonServiceCacheProperties();
+        properties.setNodeId(NODE_ID);
+
+        return properties;
+    }
+
+    private static Person person(UUID personId, String name, long version) {
+        final var person = new Person();
+        person.setId(personId);
+        person.setName(name);
+        person.setAge(30);
+        person.setVersion(version);
+
+        return person;
+    }
+}
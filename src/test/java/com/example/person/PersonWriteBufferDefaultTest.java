@@ -0,0 +1,139 @@
+package com.example.person;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PersonWriteBufferDefaultTest {
+
+    private final PersonServiceCacheProperties cacheProperties = cacheProperties();
+    private final PersonCacheWriter personCacheWriter = Mockito.mock(PersonCacheWriter.class);
+    private final PersonWriteBufferDefault writeBuffer =
+            new PersonWriteBufferDefault(cacheProperties, personCacheWriter, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void start() {
+        writeBuffer.start();
+    }
+
+    @AfterEach
+    void stop() {
+        writeBuffer.stop();
+    }
+
+    @Test
+    void bufferedPersonIsFoundUntilFlushed() {
+        final var flushing = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            flushing.await();
+            return null;
+        }).when(personCacheWriter).write(ArgumentMatchers.anyList());
+        final var person = person("Bruce Wayne");
+
+        writeBuffer.write(List.of(person));
+        assertEquals(Optional.of(person), writeBuffer.get(person.getId()));
+
+        flushing.countDown();
+        writeBuffer.stop();
+        assertEquals(Optional.empty(), writeBuffer.get(person.getId()));
+    }
+
+    @Test
+    void discardedPersonIsNotFound() {
+        final var person = person("Clark Kent");
+
+        writeBuffer.write(List.of(person));
+        writeBuffer.discard(person.getId());
+
+        assertEquals(Optional.empty(), writeBuffer.get(person.getId()));
+    }
+
+    @Test
+    void stoppingWritesEveryPersonAcknowledged() {
+        final var personIdsWritten = ConcurrentHashMap.<UUID>newKeySet();
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(100);
+            invocation.<List<Person>>getArgument(0).forEach(person -> personIdsWritten.add(person.getId()));
+            return null;
+        }).when(personCacheWriter).write(ArgumentMatchers.anyList());
+        cacheProperties.setWriteBufferMaxBatchSize(1);
+        final var people = List.of(person("Diana Prince"), person("Barry Allen"), person("Arthur Curry"));
+
+        people.forEach(person -> writeBuffer.write(List.of(person)));
+        writeBuffer.stop();
+
+        assertEquals(people.size(), personIdsWritten.size());
+        people.forEach(person -> assertTrue(personIdsWritten.contains(person.getId())));
+    }
+
+    @Test
+    void writingBlocksWhileBufferIsFullOfPeople() throws Exception {
+        final var flushing = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            flushing.await();
+            return null;
+        }).when(personCacheWriter).write(ArgumentMatchers.anyList());
+        cacheProperties.setWriteBufferCapacity(2);
+        cacheProperties.setWriteBufferMaxBatchSize(2);
+        final var writeBufferSmall =
+                new PersonWriteBufferDefault(cacheProperties, personCacheWriter, new SimpleMeterRegistry());
+        writeBufferSmall.start();
+
+        // A single write of as many people as the capacity fills the buffer
+        writeBufferSmall.write(List.of(person("Oliver Queen"), person("Dinah Lance")));
+        final var writing = Thread.ofPlatform().start(() -> writeBufferSmall.write(List.of(person("Roy Harper"))));
+        Awaitility.await()
+                .during(Duration.ofMillis(100))
+                .untilAsserted(() -> assertTrue(writing.isAlive()));
+
+        flushing.countDown();
+        writing.join(Duration.ofSeconds(5));
+        assertFalse(writing.isAlive());
+        writeBufferSmall.stop();
+    }
+
+    @Test
+    void writingAfterStopIsRejected() {
+        writeBuffer.stop();
+
+        assertThrows(IllegalStateException.class, () -> writeBuffer.write(List.of(person("Hal Jordan"))));
+        Awaitility.await()
+                .during(Duration.ofMillis(100))
+                .untilAsserted(() -> Mockito.verifyNoInteractions(personCacheWriter));
+    }
+
+    private static PersonServiceCacheProperties cacheProperties() {
+        final var properties = new PersonServiceCacheProperties();
+        // Nothing is flushed on time, so the buffer only empties once full or shut down
+        properties.setWriteBufferDurability(PersonServiceCacheProperties.WriteBufferDurability.BUFFER);
+        properties.setWriteBufferFlushInterval(Duration.ofMinutes(1));
+
+        return properties;
+    }
+
+    private static Person person(String name) {
+        final var person = new Person();
+        person.setId(UUID.randomUUID());
+        person.setName(name);
+        person.setAge(30);
+        person.setVersion(1);
+
+        return person;
+    }
+}